@@ -0,0 +1,26 @@
+package com.upgrad.quora.api.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * This Configuration tunes how responses are written: the JSON serialization of the response models.
+ * Their compression is left to Tomcat, which only compresses responses without a strong ETag; the listings carry weak ETags.
+ * <p>
+ * The ObjectMapper configured by Spring Boot is shared by the message converters and the streaming export, and caches
+ * the serializer of every model type once built; the Afterburner module registered here makes those serializers read the
+ * properties of the models through generated bytecode instead of reflection.
+ */
+@Configuration
+public class SerializationConfiguration {
+
+    /**
+     * Registered on the ObjectMapper of the application by Spring Boot, as every Module bean.
+     */
+    @Bean
+    public Module afterburnerModule() {
+        return new AfterburnerModule();
+    }
+}
@@ -1,14 +1,24 @@
 package com.upgrad.quora.api.config;
 
 
+import com.upgrad.quora.api.security.Authenticated;
+import com.upgrad.quora.api.security.AuthenticatedSessionArgumentResolver;
+import com.upgrad.quora.service.entity.UserAuthEntity;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import springfox.documentation.builders.ParameterBuilder;
 import springfox.documentation.builders.PathSelectors;
 import springfox.documentation.builders.RequestHandlerSelectors;
+import springfox.documentation.schema.ModelRef;
+import springfox.documentation.service.ResolvedMethodParameter;
 import springfox.documentation.spi.DocumentationType;
+import springfox.documentation.spi.service.OperationBuilderPlugin;
+import springfox.documentation.spi.service.contexts.OperationContext;
 import springfox.documentation.spring.web.plugins.Docket;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
+import java.util.Collections;
+
 /**
  * This Configuration integrates Swagger2 into the existing Spring Boot project.
  */
@@ -18,6 +28,37 @@ public class SwaggerConfiguration {
 
     @Bean
     public Docket swagger() {
-        return new Docket(DocumentationType.SWAGGER_2).select().apis(RequestHandlerSelectors.basePackage("com.upgrad.quora.api.controller")).paths(PathSelectors.any()).build();
+        return new Docket(DocumentationType.SWAGGER_2).select().apis(RequestHandlerSelectors.basePackage("com.upgrad.quora.api.controller")).paths(PathSelectors.any()).build()
+                .ignoredParameterTypes(UserAuthEntity.class);
+    }
+
+    /**
+     * The session parameter is resolved from the authorization header, so the operations which take one document that header instead,
+     * as they did when the controllers read the header themselves.
+     */
+    @Bean
+    public OperationBuilderPlugin authenticatedOperationPlugin() {
+        return new OperationBuilderPlugin() {
+            @Override
+            public void apply(final OperationContext context) {
+                for (final ResolvedMethodParameter parameter : context.getParameters()) {
+                    if (parameter.hasParameterAnnotation(Authenticated.class)) {
+                        context.operationBuilder().parameters(Collections.singletonList(new ParameterBuilder()
+                                .name(AuthenticatedSessionArgumentResolver.AUTHORIZATION_HEADER)
+                                .description("Access token of the signed in user, optionally prefixed with \"Bearer \"")
+                                .modelRef(new ModelRef("string"))
+                                .parameterType("header")
+                                .required(true)
+                                .build()));
+                        return;
+                    }
+                }
+            }
+
+            @Override
+            public boolean supports(final DocumentationType delimiter) {
+                return true;
+            }
+        };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,75 @@
+package com.upgrad.quora.api.config;
+
+import com.upgrad.quora.api.security.AuthenticatedSessionArgumentResolver;
+import com.upgrad.quora.service.datasource.ReadYourWritesTracker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.List;
+
+/**
+ * This Configuration registers the web MVC extensions of the application, such as the resolver of the authenticated session
+ * and the worker pool on which the question export is written.
+ */
+@Configuration
+public class WebConfiguration implements WebMvcConfigurer {
+
+    @Autowired
+    private AuthenticatedSessionArgumentResolver authenticatedSessionArgumentResolver;
+
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Value("${quora.export.pool-size:4}")
+    private int exportPoolSize;
+
+    @Value("${quora.export.queue-capacity:16}")
+    private int exportQueueCapacity;
+
+    @Override
+    public void addArgumentResolvers(final List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(authenticatedSessionArgumentResolver);
+    }
+
+    /**
+     * Unbinds the user bound by the AuthenticatedSessionArgumentResolver once the request has been handled or handed over to another thread, so that it does not leak to the next request of the thread.
+     */
+    @Override
+    public void addInterceptors(final InterceptorRegistry registry) {
+        registry.addInterceptor(new AsyncHandlerInterceptor() {
+            @Override
+            public void afterCompletion(final HttpServletRequest request, final HttpServletResponse response, final Object handler, final Exception ex) {
+                readYourWritesTracker.clearCurrentUser();
+            }
+
+            @Override
+            public void afterConcurrentHandlingStarted(final HttpServletRequest request, final HttpServletResponse response, final Object handler) {
+                readYourWritesTracker.clearCurrentUser();
+            }
+        });
+    }
+
+    /**
+     * Worker pool on which the question export is written. Each running export holds a database connection, so the pool
+     * is bounded instead of starting a thread per request. Only the export runs on it, the other asynchronous requests keep
+     * the defaults of Spring MVC.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor questionExportExecutor() {
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(exportPoolSize);
+        executor.setMaxPoolSize(exportPoolSize);
+        executor.setQueueCapacity(exportQueueCapacity);
+        executor.setThreadNamePrefix("question-export-");
+        return executor;
+    }
+}
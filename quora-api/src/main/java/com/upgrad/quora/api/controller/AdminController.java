@@ -1,8 +1,10 @@
 package com.upgrad.quora.api.controller;
 
 import com.upgrad.quora.api.model.UserDeleteResponse;
+import com.upgrad.quora.api.security.Authenticated;
 import com.upgrad.quora.service.business.UserService;
 import com.upgrad.quora.service.entity.UserEntity;
+import com.upgrad.quora.service.entity.UserAuthEntity;
 
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
@@ -23,16 +25,15 @@ public class AdminController {
      * This endpoint is used to delete a user from the Quora Application. Only an admin is authorized to access this endpoint.
      *
      * @param userUuid
-     * @param authorization
+     * @param userAuthEntity
      * @return
      * @throws UserNotFoundException
      * @throws AuthorizationFailedException
      */
     @RequestMapping(method = RequestMethod.DELETE, path = "admin/user/{userId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<UserDeleteResponse> deleteUser(@PathVariable("userId") final String userUuid,
-                                                         @RequestHeader("authorization") final String authorization) throws UserNotFoundException, AuthorizationFailedException {
-        String [] bearerToken = authorization.split("Bearer ");
-        final UserEntity userEntity = userService.deleteUser(userUuid, bearerToken[0]);
+                                                         @Authenticated final UserAuthEntity userAuthEntity) throws UserNotFoundException, AuthorizationFailedException {
+        final UserEntity userEntity = userService.deleteUser(userUuid, userAuthEntity);
         UserDeleteResponse userDeleteResponse = new UserDeleteResponse().id(userEntity.getUuid()).status("USER SUCCESSFULLY DELETED");
         return new ResponseEntity<UserDeleteResponse>(userDeleteResponse, HttpStatus.OK);
     }
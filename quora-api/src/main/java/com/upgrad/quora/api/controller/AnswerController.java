@@ -1,20 +1,30 @@
 package com.upgrad.quora.api.controller;
 
 import com.upgrad.quora.api.model.*;
+import com.upgrad.quora.api.security.Authenticated;
 import com.upgrad.quora.service.business.AnswerService;
+import com.upgrad.quora.service.common.Page;
+import com.upgrad.quora.service.common.Uuids;
+import com.upgrad.quora.service.dto.AnswerSummary;
+import com.upgrad.quora.service.dto.BulkCreateResult;
 import com.upgrad.quora.service.entity.AnswerEntity;
+import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.exception.AnswerNotFoundException;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidBulkRequestException;
+import com.upgrad.quora.service.exception.InvalidCursorException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
+import com.upgrad.quora.service.exception.InvalidSortOrderException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 @RestController
 public class AnswerController {
@@ -26,20 +36,18 @@ public class AnswerController {
      * This endpoint is used to create an answer to a particular question. Any user can access this endpoint.
      *
      * @param questionId
-     * @param authorization
+     * @param userAuthEntity
      * @param answerRequest
      * @return
      * @throws AuthorizationFailedException
      * @throws InvalidQuestionException
      */
     @RequestMapping(method = RequestMethod.POST, path = "/question/{questionId}/answer/create", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<AnswerResponse> createAnswer(@PathVariable("questionId") String questionId, @RequestHeader("authorization") final String authorization, final AnswerRequest answerRequest) throws AuthorizationFailedException, InvalidQuestionException {
-        String accessToken = authorization.split("Bearer ")[0];
-
+    public ResponseEntity<AnswerResponse> createAnswer(@PathVariable("questionId") String questionId, @Authenticated final UserAuthEntity userAuthEntity, final AnswerRequest answerRequest) throws AuthorizationFailedException, InvalidQuestionException {
         AnswerEntity answerEntity = new AnswerEntity();
         answerEntity.setAns(answerRequest.getAnswer());
-        answerEntity.setUuid(UUID.randomUUID().toString());
-        AnswerEntity answerEntityResponse = answerService.createAnswer(questionId, answerEntity, accessToken);
+        answerEntity.setUuid(Uuids.timeOrdered().toString());
+        AnswerEntity answerEntityResponse = answerService.createAnswer(questionId, answerEntity, userAuthEntity);
 
         AnswerResponse answerResponse = new AnswerResponse();
         answerResponse.setId(answerEntityResponse.getUuid());
@@ -48,24 +56,61 @@ public class AnswerController {
         return new ResponseEntity<AnswerResponse>(answerResponse, HttpStatus.CREATED);
     }
 
+    /**
+     * This endpoint is used to create many answers to a particular question at once, such as when seeding or migrating data. Any user can access this endpoint.
+     *
+     * The access token and the question are checked once and all the answers are inserted in a single transaction. Every answer is reported
+     * in the order of the request, either with its uuid or with the reason it was not created.
+     *
+     * @param questionId
+     * @param userAuthEntity
+     * @param answerRequests
+     * @return
+     * @throws AuthorizationFailedException
+     * @throws InvalidQuestionException
+     * @throws InvalidBulkRequestException
+     */
+    @RequestMapping(method = RequestMethod.POST, path = "/question/{questionId}/answer/create/bulk", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<List<AnswerBulkCreateResponse>> createAnswers(@PathVariable("questionId") final String questionId, @Authenticated final UserAuthEntity userAuthEntity,
+                                                                        @RequestBody final List<AnswerRequest> answerRequests)
+        throws AuthorizationFailedException, InvalidQuestionException, InvalidBulkRequestException {
+        final List<AnswerEntity> answerEntities = new ArrayList<>();
+        for (AnswerRequest answerRequest : answerRequests) {
+            AnswerEntity answerEntity = new AnswerEntity();
+            answerEntity.setAns(answerRequest.getAnswer());
+            answerEntity.setUuid(Uuids.timeOrdered().toString());
+            answerEntities.add(answerEntity);
+        }
+
+        final List<AnswerBulkCreateResponse> responses = new ArrayList<>();
+        for (BulkCreateResult result : answerService.createAnswers(questionId, answerEntities, userAuthEntity)) {
+            final AnswerBulkCreateResponse response = new AnswerBulkCreateResponse().index(result.getIndex());
+            if (result.isCreated()) {
+                response.id(result.getUuid()).status("ANSWER CREATED");
+            } else {
+                response.status("ANSWER REJECTED").code(result.getCode()).message(result.getErrorMessage());
+            }
+            responses.add(response);
+        }
+        return new ResponseEntity<List<AnswerBulkCreateResponse>>(responses, HttpStatus.OK);
+    }
+
     /**
      * This endpoint is used to edit an answer. Only the owner of the answer can edit the answer.
      *
      * @param answerId
-     * @param authorization
+     * @param userAuthEntity
      * @param answerEditRequest
      * @return
      * @throws AuthorizationFailedException
      * @throws AnswerNotFoundException
      */
     @RequestMapping(method = RequestMethod.PUT, path = "/answer/edit/{answerId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<AnswerEditResponse> editAnswer(@PathVariable("answerId") String answerId, @RequestHeader("authorization") final String authorization, final AnswerEditRequest answerEditRequest)
+    public ResponseEntity<AnswerEditResponse> editAnswer(@PathVariable("answerId") String answerId, @Authenticated final UserAuthEntity userAuthEntity, final AnswerEditRequest answerEditRequest)
         throws AuthorizationFailedException, AnswerNotFoundException {
-        String accessToken = authorization.split("Bearer ")[0];
-
         AnswerEntity answerEntity = new AnswerEntity();
         answerEntity.setAns(answerEditRequest.getContent());
-        AnswerEntity answerEntityResponse = answerService.editAnswer(answerId, answerEntity, accessToken);
+        AnswerEntity answerEntityResponse = answerService.editAnswer(answerId, answerEntity, userAuthEntity);
 
         AnswerEditResponse answerResponse = new AnswerEditResponse();
         answerResponse.setId(answerEntityResponse.getUuid());
@@ -78,16 +123,15 @@ public class AnswerController {
      * This endpoint is used to delete an answer. Only the owner of the answer or admin can delete an answer.
      *
      * @param answerId
-     * @param authorization
+     * @param userAuthEntity
      * @return
      * @throws AuthorizationFailedException
      * @throws AnswerNotFoundException
      */
     @RequestMapping(method = RequestMethod.DELETE, path = "/answer/delete/{answerId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<AnswerDeleteResponse> deleteAnswer(@PathVariable("answerId") final String answerId,
-        @RequestHeader("authorization") final String authorization) throws AuthorizationFailedException, AnswerNotFoundException {
-        String accessToken = authorization.split("Bearer ")[0];
-        final AnswerEntity answerEntity = answerService.deleteAnswer(answerId, accessToken);
+        @Authenticated final UserAuthEntity userAuthEntity) throws AuthorizationFailedException, AnswerNotFoundException {
+        final AnswerEntity answerEntity = answerService.deleteAnswer(answerId, userAuthEntity);
 
         AnswerDeleteResponse answerDeleteResponse = new AnswerDeleteResponse().id(answerEntity.getUuid()).status("ANSWER DELETED");
         return new ResponseEntity<AnswerDeleteResponse>(answerDeleteResponse, HttpStatus.OK);
@@ -96,31 +140,51 @@ public class AnswerController {
     /**
      * This endpoint is used to get all answers to a particular question. Any user can access this endpoint.
      *
+     * The answers are returned one page at a time, newest or oldest first. The cursor of the next page is returned in the next-cursor header,
+     * which is absent on the last page. The response carries an ETag; when it matches the If-None-Match header of the request,
+     * 304 is returned without reading the answers.
+     *
      * @param questionId
-     * @param authorization
+     * @param userAuthEntity
+     * @param sort
+     * @param cursor
+     * @param limit
+     * @param webRequest
      * @return
      * @throws AuthorizationFailedException
      * @throws InvalidQuestionException
+     * @throws InvalidSortOrderException
+     * @throws InvalidCursorException
      */
     @RequestMapping(method = RequestMethod.GET, path = "answer/all/{questionId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<List<AnswerDetailsResponse>> getAllAnswersByQuestionId(@PathVariable("questionId")String questionId, @RequestHeader("authorization") final String authorization)
-        throws AuthorizationFailedException, InvalidQuestionException {
-        String accessToken = authorization.split("Bearer ")[0];
-
-        final List<AnswerEntity> answerEntities = answerService.getAllAnswersByQuestionId(accessToken, questionId);
+    public ResponseEntity<List<AnswerDetailsResponse>> getAllAnswersByQuestionId(@PathVariable("questionId")String questionId, @Authenticated final UserAuthEntity userAuthEntity,
+                                                                                 @RequestParam(value = "sort", required = false) final String sort,
+                                                                                 @RequestParam(value = "cursor", required = false) final String cursor,
+                                                                                 @RequestParam(value = "limit", required = false) final Integer limit,
+                                                                                 final WebRequest webRequest)
+        throws AuthorizationFailedException, InvalidQuestionException, InvalidSortOrderException, InvalidCursorException {
+        if (webRequest.checkNotModified(answerService.getAllAnswersETag(userAuthEntity, questionId))) {
+            return null;
+        }
+        final Page<AnswerSummary> page = answerService.getAllAnswersByQuestionId(userAuthEntity, questionId, sort, cursor, limit);
+        final List<AnswerSummary> answers = page.getItems();
 
         List<AnswerDetailsResponse> answerDetailsResponseList = null;
 
-        if(!answerEntities.isEmpty()) {
+        if(!answers.isEmpty()) {
             answerDetailsResponseList = new ArrayList<>();
-            for (AnswerEntity answerEntity : answerEntities) {
+            for (AnswerSummary answer : answers) {
                 AnswerDetailsResponse answerDetailsResponse = new AnswerDetailsResponse();
-                answerDetailsResponse.setId(answerEntity.getUuid());
-                answerDetailsResponse.setAnswerContent(answerEntity.getAns());
-                answerDetailsResponse.setQuestionContent(answerEntity.getQuestion().getContent());
+                answerDetailsResponse.setId(answer.getUuid());
+                answerDetailsResponse.setAnswerContent(answer.getAns());
+                answerDetailsResponse.setQuestionContent(answer.getQuestionContent());
                 answerDetailsResponseList.add(answerDetailsResponse);
             }
         }
-        return new ResponseEntity<List<AnswerDetailsResponse>>(answerDetailsResponseList, HttpStatus.OK);
+        HttpHeaders headers = new HttpHeaders();
+        if (page.getNextCursor() != null) {
+            headers.add(QuestionController.NEXT_CURSOR_HEADER, page.getNextCursor().encode());
+        }
+        return new ResponseEntity<List<AnswerDetailsResponse>>(answerDetailsResponseList, headers, HttpStatus.OK);
     }
 }
@@ -2,6 +2,7 @@ package com.upgrad.quora.api.controller;
 
 import com.upgrad.quora.api.model.SignoutResponse;
 import com.upgrad.quora.api.model.UserDetailsResponse;
+import com.upgrad.quora.api.security.Authenticated;
 import com.upgrad.quora.service.business.CommonService;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
@@ -25,16 +26,14 @@ public class CommonController {
      * This endpoint is used to get the details of any user in the Quora Application. This endpoint can be accessed by any user in the application.
      *
      * @param userId
-     * @param authorization
+     * @param userAuthEntity
      * @return
      * @throws AuthorizationFailedException
      * @throws UserNotFoundException
      */
     @RequestMapping(method = RequestMethod.GET, path = "/userprofile/{userId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<UserDetailsResponse> getUserProfile(@PathVariable("userId") String userId, @RequestHeader("authorization") final String authorization) throws AuthorizationFailedException, UserNotFoundException {
-        String accessToken = authorization.split("Bearer ")[0];
-
-        UserEntity userEntity = commonService.getUserProfile(userId, accessToken);
+    public ResponseEntity<UserDetailsResponse> getUserProfile(@PathVariable("userId") String userId, @Authenticated final UserAuthEntity userAuthEntity) throws AuthorizationFailedException, UserNotFoundException {
+        UserEntity userEntity = commonService.getUserProfile(userId, userAuthEntity);
 
         UserDetailsResponse userDetailsResponse = new UserDetailsResponse().firstName(userEntity.getFirstName())
             .lastName(userEntity.getLastName()).userName(userEntity.getUserName()).emailAddress(userEntity.getEmail())
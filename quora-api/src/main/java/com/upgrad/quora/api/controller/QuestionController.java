@@ -1,97 +1,261 @@
 package com.upgrad.quora.api.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.upgrad.quora.api.model.*;
+import com.upgrad.quora.api.security.Authenticated;
 import com.upgrad.quora.service.business.QuestionService;
+import com.upgrad.quora.service.common.Page;
+import com.upgrad.quora.service.common.Uuids;
+import com.upgrad.quora.service.dto.BulkCreateResult;
+import com.upgrad.quora.service.dto.QuestionSearchHit;
+import com.upgrad.quora.service.dto.QuestionSummary;
 import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidBulkRequestException;
+import com.upgrad.quora.service.exception.InvalidCursorException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.Callable;
 
 @RestController
 @RequestMapping("/")
 public class QuestionController {
 
+    public static final String NEXT_CURSOR_HEADER = "next-cursor";
+
+    /**
+     * Number of exported questions after which the response is flushed to the client.
+     */
+    private static final int EXPORT_FLUSH_INTERVAL = 100;
+
     @Autowired
     private QuestionService questionService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    @Qualifier("questionExportExecutor")
+    private AsyncTaskExecutor questionExportExecutor;
+
+    @Value("${quora.export.timeout-millis:300000}")
+    private long exportTimeoutMillis;
+
     /**
      * This endpoint is used to create a question in the Quora Application which will be shown to all the users. Any user can access this endpoint.
      *
-     * @param authorization
+     * @param userAuthEntity
      * @param questionRequest
      * @return
      * @throws AuthorizationFailedException
      */
     @RequestMapping(method = RequestMethod.POST, path = "question/create", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<QuestionResponse> createQuestion(@RequestHeader("authorization") final String authorization, final QuestionRequest questionRequest) throws AuthorizationFailedException {
-        String accessToken = authorization.split("Bearer ")[0];
-
+    public ResponseEntity<QuestionResponse> createQuestion(@Authenticated final UserAuthEntity userAuthEntity, final QuestionRequest questionRequest) throws AuthorizationFailedException {
         QuestionEntity questionEntity = new QuestionEntity();
-        questionEntity.setUuid(UUID.randomUUID().toString());
+        questionEntity.setUuid(Uuids.timeOrdered().toString());
         questionEntity.setContent(questionRequest.getContent());
         questionEntity.setDate(LocalDateTime.now());
 
-        final QuestionEntity createdQuestionEntity = questionService.createQuestion(accessToken, questionEntity);
+        final QuestionEntity createdQuestionEntity = questionService.createQuestion(userAuthEntity, questionEntity);
 
         QuestionResponse questionResponse = new QuestionResponse().id(createdQuestionEntity.getUuid()).status("QUESTION CREATED");
         return new ResponseEntity<QuestionResponse>(questionResponse, HttpStatus.CREATED);
     }
 
+    /**
+     * This endpoint is used to create many questions at once, such as when seeding or migrating data. Any user can access this endpoint.
+     *
+     * The access token is checked once and all the questions are inserted in a single transaction. Every question is reported
+     * in the order of the request, either with its uuid or with the reason it was not created.
+     *
+     * @param userAuthEntity
+     * @param questionRequests
+     * @return
+     * @throws AuthorizationFailedException
+     * @throws InvalidBulkRequestException
+     */
+    @RequestMapping(method = RequestMethod.POST, path = "question/create/bulk", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<List<QuestionBulkCreateResponse>> createQuestions(@Authenticated final UserAuthEntity userAuthEntity,
+                                                                            @RequestBody final List<QuestionRequest> questionRequests) throws AuthorizationFailedException, InvalidBulkRequestException {
+        final LocalDateTime now = LocalDateTime.now();
+        final List<QuestionEntity> questionEntities = new ArrayList<>();
+        for (QuestionRequest questionRequest : questionRequests) {
+            QuestionEntity questionEntity = new QuestionEntity();
+            questionEntity.setUuid(Uuids.timeOrdered().toString());
+            questionEntity.setContent(questionRequest.getContent());
+            questionEntity.setDate(now);
+            questionEntities.add(questionEntity);
+        }
+
+        final List<QuestionBulkCreateResponse> responses = new ArrayList<>();
+        for (BulkCreateResult result : questionService.createQuestions(userAuthEntity, questionEntities)) {
+            final QuestionBulkCreateResponse response = new QuestionBulkCreateResponse().index(result.getIndex());
+            if (result.isCreated()) {
+                response.id(result.getUuid()).status("QUESTION CREATED");
+            } else {
+                response.status("QUESTION REJECTED").code(result.getCode()).message(result.getErrorMessage());
+            }
+            responses.add(response);
+        }
+        return new ResponseEntity<List<QuestionBulkCreateResponse>>(responses, HttpStatus.OK);
+    }
+
     /**
      * This endpoint is used to fetch all the questions that have been posted in the application by any user. Any user can access this endpoint.
      *
-     * @param authorization
+     * The questions are returned newest first, one page at a time. The cursor of the next page is returned in the next-cursor header,
+     * which is absent on the last page. The response carries an ETag; when it matches the If-None-Match header of the request,
+     * 304 is returned without reading the questions.
+     *
+     * @param userAuthEntity
+     * @param cursor
+     * @param limit
+     * @param webRequest
      * @return
      * @throws AuthorizationFailedException
+     * @throws InvalidCursorException
      */
     @RequestMapping(method = RequestMethod.GET, path = "question/all", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<List<QuestionDetailsResponse>> getAllQuestion(@RequestHeader("authorization") final String authorization) throws AuthorizationFailedException {
-        String accessToken = authorization.split("Bearer ")[0];
-
-        final List<QuestionEntity> questionEntities = questionService.getAllQuestions(accessToken);
+    public ResponseEntity<List<QuestionDetailsResponse>> getAllQuestion(@Authenticated final UserAuthEntity userAuthEntity,
+                                                                        @RequestParam(value = "cursor", required = false) final String cursor,
+                                                                        @RequestParam(value = "limit", required = false) final Integer limit,
+                                                                        final WebRequest webRequest) throws AuthorizationFailedException, InvalidCursorException {
+        if (webRequest.checkNotModified(questionService.getAllQuestionsETag(userAuthEntity))) {
+            return null;
+        }
+        final Page<QuestionSummary> page = questionService.getAllQuestions(userAuthEntity, cursor, limit);
+        final List<QuestionSummary> questions = page.getItems();
 
         List<QuestionDetailsResponse> questionDetailsResponses = null;
 
-        if(!questionEntities.isEmpty()) {
+        if(!questions.isEmpty()) {
             questionDetailsResponses = new ArrayList<>();
-            for (QuestionEntity questionEntity : questionEntities) {
+            for (QuestionSummary question : questions) {
                 QuestionDetailsResponse questionDetailsResponse = new QuestionDetailsResponse();
-                questionDetailsResponse.setId(questionEntity.getUuid());
-                questionDetailsResponse.setContent(questionEntity.getContent());
+                questionDetailsResponse.setId(question.getUuid());
+                questionDetailsResponse.setContent(question.getContent());
                 questionDetailsResponses.add(questionDetailsResponse);
             }
         }
-        return new ResponseEntity<List<QuestionDetailsResponse>>(questionDetailsResponses, HttpStatus.OK);
+        HttpHeaders headers = new HttpHeaders();
+        if (page.getNextCursor() != null) {
+            headers.add(NEXT_CURSOR_HEADER, page.getNextCursor().encode());
+        }
+        return new ResponseEntity<List<QuestionDetailsResponse>>(questionDetailsResponses, headers, HttpStatus.OK);
+    }
+
+    /**
+     * This endpoint is used to search the questions by their content. Any user can access this endpoint.
+     *
+     * The questions matching the query are returned best ranked first, one page at a time. The cursor of the next page is returned in the next-cursor header,
+     * which is absent on the last page.
+     *
+     * @param userAuthEntity
+     * @param query
+     * @param cursor
+     * @param limit
+     * @return
+     * @throws AuthorizationFailedException
+     * @throws InvalidCursorException
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "question/search", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public ResponseEntity<List<QuestionDetailsResponse>> searchQuestions(@Authenticated final UserAuthEntity userAuthEntity,
+                                                                         @RequestParam("q") final String query,
+                                                                         @RequestParam(value = "cursor", required = false) final String cursor,
+                                                                         @RequestParam(value = "limit", required = false) final Integer limit) throws AuthorizationFailedException, InvalidCursorException {
+        final Page<QuestionSearchHit> page = questionService.searchQuestions(userAuthEntity, query, cursor, limit);
+
+        final List<QuestionDetailsResponse> questionDetailsResponses = new ArrayList<>();
+        for (QuestionSearchHit hit : page.getItems()) {
+            QuestionDetailsResponse questionDetailsResponse = new QuestionDetailsResponse();
+            questionDetailsResponse.setId(hit.getUuid());
+            questionDetailsResponse.setContent(hit.getContent());
+            questionDetailsResponses.add(questionDetailsResponse);
+        }
+        HttpHeaders headers = new HttpHeaders();
+        if (page.getNextCursor() != null) {
+            headers.add(NEXT_CURSOR_HEADER, page.getNextCursor().encode());
+        }
+        return new ResponseEntity<List<QuestionDetailsResponse>>(questionDetailsResponses, headers, HttpStatus.OK);
+    }
+
+    /**
+     * This endpoint is used to export all the questions in a single response, for consumers which need the full list. Any user can access this endpoint.
+     *
+     * The questions are returned in id order as a JSON array which is written while the database cursor is being read,
+     * so the list is never held in memory and the first questions reach the client before the last ones have been read.
+     * The response is written on the bounded export pool, with the export timeout.
+     *
+     * @param userAuthEntity
+     * @return
+     * @throws AuthorizationFailedException
+     */
+    @RequestMapping(method = RequestMethod.GET, path = "question/export", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
+    public WebAsyncTask<Void> exportAllQuestions(@Authenticated final UserAuthEntity userAuthEntity, final HttpServletResponse response) throws AuthorizationFailedException {
+        questionService.authorizeExport(userAuthEntity);
+
+        final Callable<Void> export = () -> {
+            response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+                generator.writeStartArray();
+                questionService.exportQuestions(questionEntity -> {
+                    try {
+                        generator.writeStartObject();
+                        generator.writeStringField("id", questionEntity.getUuid());
+                        generator.writeStringField("content", questionEntity.getContent());
+                        generator.writeEndObject();
+                        if (generator.getOutputContext().getCurrentIndex() % EXPORT_FLUSH_INTERVAL == 0) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return null;
+        };
+        return new WebAsyncTask<Void>(exportTimeoutMillis, questionExportExecutor, export);
     }
 
     /**
      * This endpoint is used to edit a question that has been posted by a user. Note, only the owner of the question can edit the question.
      *
      * @param questionId
-     * @param authorization
+     * @param userAuthEntity
      * @param questionEditRequest
      * @return
      * @throws AuthorizationFailedException
      * @throws InvalidQuestionException
      */
     @RequestMapping(method = RequestMethod.PUT, path = "/question/edit/{questionId}", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<QuestionEditResponse> editQuestion(@PathVariable("questionId") final String questionId, @RequestHeader("authorization") final String authorization, final QuestionEditRequest questionEditRequest) throws AuthorizationFailedException, InvalidQuestionException {
-        String accessToken = authorization.split("Bearer ")[0];
-
+    public ResponseEntity<QuestionEditResponse> editQuestion(@PathVariable("questionId") final String questionId, @Authenticated final UserAuthEntity userAuthEntity, final QuestionEditRequest questionEditRequest) throws AuthorizationFailedException, InvalidQuestionException {
         QuestionEntity questionEntity = new QuestionEntity();
         questionEntity.setContent(questionEditRequest.getContent());
 
-        final QuestionEntity editedQuestionEntity = questionService.editQuestion(accessToken, questionId, questionEntity);
+        final QuestionEntity editedQuestionEntity = questionService.editQuestion(userAuthEntity, questionId, questionEntity);
 
         QuestionEditResponse questionEditResponse = new QuestionEditResponse().id(editedQuestionEntity.getUuid()).status("QUESTION EDITED");
         return new ResponseEntity<QuestionEditResponse>(questionEditResponse, HttpStatus.OK);
@@ -101,16 +265,15 @@ public class QuestionController {
      * This endpoint is used to delete a question that has been posted by a user. Note, only the question owner of the question or admin can delete a question.
      *
      * @param questionId
-     * @param authorization
+     * @param userAuthEntity
      * @return
      * @throws AuthorizationFailedException
      * @throws InvalidQuestionException
      */
     @RequestMapping(method = RequestMethod.DELETE, path = "/question/delete/{questionId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
     public ResponseEntity<QuestionDeleteResponse> deleteQuestion(@PathVariable("questionId") final String questionId,
-                                                         @RequestHeader("authorization") final String authorization) throws AuthorizationFailedException, InvalidQuestionException {
-        String [] bearerToken = authorization.split("Bearer ");
-        final QuestionEntity questionEntity = questionService.deleteQuestion(questionId, bearerToken[0]);
+                                                         @Authenticated final UserAuthEntity userAuthEntity) throws AuthorizationFailedException, InvalidQuestionException {
+        final QuestionEntity questionEntity = questionService.deleteQuestion(questionId, userAuthEntity);
         QuestionDeleteResponse questionDeleteResponse = new QuestionDeleteResponse().id(questionEntity.getUuid()).status("QUESTION DELETED");
         return new ResponseEntity<QuestionDeleteResponse>(questionDeleteResponse, HttpStatus.OK);
     }
@@ -119,25 +282,23 @@ public class QuestionController {
      * This endpoint is used to fetch all the questions posed by a specific user. Any user can access this endpoint.
      *
      * @param userId
-     * @param authorization
+     * @param userAuthEntity
      * @return
      * @throws AuthorizationFailedException
      * @throws UserNotFoundException
      */
     @RequestMapping(method = RequestMethod.GET, path = "question/all/{userId}", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<List<QuestionDetailsResponse>> getAllQuestionByUser(@PathVariable("userId")String userId, @RequestHeader("authorization") final String authorization) throws AuthorizationFailedException, UserNotFoundException {
-        String accessToken = authorization.split("Bearer ")[0];
-
-        final List<QuestionEntity> questionEntities = questionService.getAllQuestionsByUser(accessToken, userId);
+    public ResponseEntity<List<QuestionDetailsResponse>> getAllQuestionByUser(@PathVariable("userId")String userId, @Authenticated final UserAuthEntity userAuthEntity) throws AuthorizationFailedException, UserNotFoundException {
+        final List<QuestionSummary> questions = questionService.getAllQuestionsByUser(userAuthEntity, userId);
 
         List<QuestionDetailsResponse> questionDetailsResponses = null;
 
-        if(!questionEntities.isEmpty()) {
+        if(!questions.isEmpty()) {
             questionDetailsResponses = new ArrayList<>();
-            for (QuestionEntity questionEntity : questionEntities) {
+            for (QuestionSummary question : questions) {
                 QuestionDetailsResponse questionDetailsResponse = new QuestionDetailsResponse();
-                questionDetailsResponse.setId(questionEntity.getUuid());
-                questionDetailsResponse.setContent(questionEntity.getContent());
+                questionDetailsResponse.setId(question.getUuid());
+                questionDetailsResponse.setContent(question.getContent());
                 questionDetailsResponses.add(questionDetailsResponse);
             }
         }
@@ -4,14 +4,14 @@ import com.upgrad.quora.api.model.SignupUserRequest;
 import com.upgrad.quora.api.model.SignupUserResponse;
 import com.upgrad.quora.api.model.SigninResponse;
 import com.upgrad.quora.api.model.SignoutResponse;
+import com.upgrad.quora.api.security.Authenticated;
 
+import com.upgrad.quora.service.common.Uuids;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.business.UserService;
 
-import com.upgrad.quora.service.exception.AuthenticationFailedException;
 import com.upgrad.quora.service.exception.SignOutRestrictedException;
-import com.upgrad.quora.service.exception.SignUpRestrictedException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
@@ -22,9 +22,11 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 
+import javax.servlet.http.HttpServletRequest;
 import java.util.Base64;
-import java.util.UUID;
+import java.util.concurrent.CompletionException;
 
 /**
  * This controller class will serve http requests related to User.
@@ -40,15 +42,16 @@ public class UserController {
     /**
      * This endpoint is used to register a new user in the Quora Application.
      *
+     * The password is hashed on a separate worker pool, so the request thread is released until the user has been created.
+     *
      * @param signupUserRequest
      * @return
-     * @throws SignUpRestrictedException
      */
     @RequestMapping(method = RequestMethod.POST, path = "user/signup", consumes = MediaType.APPLICATION_JSON_UTF8_VALUE, produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<SignupUserResponse> signup(final SignupUserRequest signupUserRequest) throws SignUpRestrictedException {
+    public DeferredResult<ResponseEntity<SignupUserResponse>> signup(final SignupUserRequest signupUserRequest) {
         final UserEntity userEntity = new UserEntity();
 
-        userEntity.setUuid(UUID.randomUUID().toString());
+        userEntity.setUuid(Uuids.timeOrdered().toString());
         userEntity.setFirstName(signupUserRequest.getFirstName());
         userEntity.setLastName(signupUserRequest.getLastName());
         userEntity.setUserName(signupUserRequest.getUserName());
@@ -60,51 +63,65 @@ public class UserController {
         userEntity.setContactNumber(signupUserRequest.getContactNumber());
         userEntity.setSalt("1234abc");
 
-        final UserEntity createdUserEntity = userService.createUser(userEntity);
-        SignupUserResponse userResponse = new SignupUserResponse();
-        userResponse.setId(createdUserEntity.getUuid());
-        userResponse.setStatus("USER SUCCESSFULLY REGISTERED");
-        return new ResponseEntity<SignupUserResponse>(userResponse, HttpStatus.CREATED);
+        final DeferredResult<ResponseEntity<SignupUserResponse>> deferredResult = new DeferredResult<>();
+        userService.createUser(userEntity).whenComplete((createdUserEntity, throwable) -> {
+            if (throwable != null) {
+                deferredResult.setErrorResult(unwrap(throwable));
+                return;
+            }
+            SignupUserResponse userResponse = new SignupUserResponse();
+            userResponse.setId(createdUserEntity.getUuid());
+            userResponse.setStatus("USER SUCCESSFULLY REGISTERED");
+            deferredResult.setResult(new ResponseEntity<SignupUserResponse>(userResponse, HttpStatus.CREATED));
+        });
+        return deferredResult;
     }
 
     /**
      * This endpoint is used for user authentication. The user authenticates in the application and after successful authentication, JWT token is given to a user.
      *
+     * The password is hashed on a separate worker pool, so the request thread is released until the user has been authenticated.
+     * Sign in attempts are throttled per username and per client address.
+     *
      * @param authorization
+     * @param request
      * @return
-     * @throws AuthenticationFailedException
      */
     @RequestMapping(method = RequestMethod.POST, path = "user/signin", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<SigninResponse> signin(@RequestHeader("authorization") final String authorization) throws AuthenticationFailedException {
+    public DeferredResult<ResponseEntity<SigninResponse>> signin(@RequestHeader("authorization") final String authorization, final HttpServletRequest request) {
         byte[] decode = Base64.getDecoder().decode(authorization.split("Basic ")[1]);
         String decodedText = new String(decode);
         String[] decodedArray = decodedText.split(":");
 
-        UserAuthEntity userAuthEntity = userService.signIn(decodedArray[0], decodedArray[1]);
-        UserEntity user = userAuthEntity.getUser();
-
-        SigninResponse signinResponse = new SigninResponse();
-        signinResponse.setId(user.getUuid());
-        signinResponse.setMessage("SIGNED IN SUCCESSFULLY");
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.add("access-token", userAuthEntity.getAccessToken());
-        return new ResponseEntity<SigninResponse>(signinResponse, headers, HttpStatus.OK);
+        final DeferredResult<ResponseEntity<SigninResponse>> deferredResult = new DeferredResult<>();
+        userService.signIn(decodedArray[0], decodedArray[1], request.getRemoteAddr()).whenComplete((userAuthEntity, throwable) -> {
+            if (throwable != null) {
+                deferredResult.setErrorResult(unwrap(throwable));
+                return;
+            }
+            UserEntity user = userAuthEntity.getUser();
+
+            SigninResponse signinResponse = new SigninResponse();
+            signinResponse.setId(user.getUuid());
+            signinResponse.setMessage("SIGNED IN SUCCESSFULLY");
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.add("access-token", userAuthEntity.getAccessToken());
+            deferredResult.setResult(new ResponseEntity<SigninResponse>(signinResponse, headers, HttpStatus.OK));
+        });
+        return deferredResult;
     }
 
     /**
      * This endpoint is used to sign out from the Quora Application. The user cannot access any other endpoint once he is signed out of the application.
      *
-     * @param authorization
+     * @param session
      * @return
      * @throws SignOutRestrictedException
      */
     @RequestMapping(method = RequestMethod.POST, path = "user/signout", produces = MediaType.APPLICATION_JSON_UTF8_VALUE)
-    public ResponseEntity<SignoutResponse> signout(@RequestHeader("authorization") final String authorization) throws SignOutRestrictedException {
-
-        String accessToken = authorization.split("Bearer ")[0];
-
-        UserAuthEntity userAuthEntity = userService.signOut(accessToken);
+    public ResponseEntity<SignoutResponse> signout(@Authenticated final UserAuthEntity session) throws SignOutRestrictedException {
+        UserAuthEntity userAuthEntity = userService.signOut(session);
         UserEntity user = userAuthEntity.getUser();
 
         SignoutResponse signoutResponse = new SignoutResponse();
@@ -113,4 +130,11 @@ public class UserController {
 
         return new ResponseEntity<SignoutResponse>(signoutResponse, HttpStatus.OK);
     }
+
+    private static Throwable unwrap(final Throwable throwable) {
+        if (throwable instanceof CompletionException && throwable.getCause() != null) {
+            return throwable.getCause();
+        }
+        return throwable;
+    }
 }
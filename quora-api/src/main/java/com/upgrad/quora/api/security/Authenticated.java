@@ -0,0 +1,17 @@
+package com.upgrad.quora.api.security;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a controller parameter of type UserAuthEntity which receives the session resolved from the "authorization" header.
+ * The parameter is null when the access token does not belong to any session.
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Authenticated {
+}
@@ -0,0 +1,77 @@
+package com.upgrad.quora.api.security;
+
+import com.upgrad.quora.service.business.AuthenticationService;
+import com.upgrad.quora.service.datasource.ReadYourWritesTracker;
+import com.upgrad.quora.service.entity.UserAuthEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.ServletRequestBindingException;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Resolves controller parameters annotated with {@link Authenticated} into the session of the caller.
+ * The access token is parsed from the "authorization" header and resolved at most once per request,
+ * so every service called while handling the request shares the same session.
+ * The user of the session is bound to the ReadYourWritesTracker until the request completes.
+ */
+@Component
+public class AuthenticatedSessionArgumentResolver implements HandlerMethodArgumentResolver {
+
+    public static final String AUTHORIZATION_HEADER = "authorization";
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private static final String SESSION_ATTRIBUTE = AuthenticatedSessionArgumentResolver.class.getName() + ".SESSION";
+
+    private static final Object NO_SESSION = new Object();
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Override
+    public boolean supportsParameter(final MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(Authenticated.class) && UserAuthEntity.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public UserAuthEntity resolveArgument(final MethodParameter parameter, final ModelAndViewContainer mavContainer,
+                                          final NativeWebRequest webRequest, final WebDataBinderFactory binderFactory) throws ServletRequestBindingException {
+        final Object resolved = webRequest.getAttribute(SESSION_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (resolved != null) {
+            return resolved == NO_SESSION ? null : (UserAuthEntity) resolved;
+        }
+
+        final String authorization = webRequest.getHeader(AUTHORIZATION_HEADER);
+        if (authorization == null) {
+            throw new ServletRequestBindingException("Missing request header '" + AUTHORIZATION_HEADER + "' for method parameter of type UserAuthEntity");
+        }
+        final UserAuthEntity userAuthEntity = authenticationService.authenticate(extractAccessToken(authorization));
+        webRequest.setAttribute(SESSION_ATTRIBUTE, userAuthEntity == null ? NO_SESSION : userAuthEntity, RequestAttributes.SCOPE_REQUEST);
+        if (userAuthEntity != null && userAuthEntity.getUser() != null) {
+            readYourWritesTracker.setCurrentUser(userAuthEntity.getUser().getUuid());
+        }
+        return userAuthEntity;
+    }
+
+    /**
+     * This method returns the access token of the "authorization" header, with or without the "Bearer " scheme prefix.
+     * The header is inspected in place, so no regular expression is compiled and no array is allocated.
+     *
+     * @param authorization value of the "authorization" header
+     * @return access token
+     */
+    public static String extractAccessToken(final String authorization) {
+        if (authorization.regionMatches(true, 0, BEARER_PREFIX, 0, BEARER_PREFIX.length())) {
+            return authorization.substring(BEARER_PREFIX.length());
+        }
+        return authorization;
+    }
+}
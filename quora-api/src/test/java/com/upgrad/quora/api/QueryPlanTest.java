@@ -0,0 +1,156 @@
+package com.upgrad.quora.api;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hql.internal.ast.ASTQueryTranslatorFactory;
+import org.hibernate.hql.spi.ParameterTranslations;
+import org.hibernate.hql.spi.QueryTranslator;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.metamodel.EntityType;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class QueryPlanTest {
+
+    //Sample values of the parameters of the named queries, by parameter name. Entity parameters are given by id.
+    private static final Map<String, Object> PARAMETER_VALUES = new HashMap<>();
+
+    static {
+        PARAMETER_VALUES.put("uuid", UUID.fromString("00000000-0000-7000-8000-000000001025"));
+        PARAMETER_VALUES.put("username", "database_username");
+        PARAMETER_VALUES.put("email", "database_email");
+        PARAMETER_VALUES.put("accessTokenDigest", "0000000000000000000000000000000000000000000000000000000000000000");
+        PARAMETER_VALUES.put("date", Timestamp.valueOf("2018-09-17 19:41:19.593"));
+        PARAMETER_VALUES.put("id", 1024);
+        PARAMETER_VALUES.put("question", 1024);
+        PARAMETER_VALUES.put("fromId", 0);
+        PARAMETER_VALUES.put("toId", 10000);
+    }
+
+    //Named queries which continue a listing after a cursor on (date, id).
+    private static final String[] KEYSET_QUERIES = {"getQuestionsAfter", "answersByQuestionNewestAfter", "answersByQuestionOldestAfter"};
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DataSource dataSource;
+
+    //This test case passes when no named query of the entities needs a sequential scan of a table.
+    //Sequential scans are disabled for the planner, so a table is only scanned sequentially when no index can serve the query, whatever the size of the test tables.
+    @Test
+    public void namedQueriesDoNotScanTablesSequentially() throws Exception {
+        final SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        final List<NamedQuery> namedQueries = namedQueries();
+        assertFalse(namedQueries.isEmpty());
+
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET enable_seqscan = off");
+            }
+            try {
+                for (final NamedQuery namedQuery : namedQueries) {
+                    final String plan = explain(connection, sessionFactory, namedQuery);
+                    assertFalse("Sequential scan in the plan of " + namedQuery.name() + ":\n" + plan, plan.contains("Seq Scan"));
+                }
+            } finally {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("RESET enable_seqscan");
+                }
+            }
+        }
+    }
+
+    //This test case passes when the pages after a cursor start at the cursor in the index, instead of filtering the rows which precede it.
+    //The seek on (date, id) must be part of the index condition; a filter on the rows read from the index costs as much as an offset.
+    @Test
+    public void keysetQueriesSeekOnDateAndId() throws Exception {
+        final SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        final Map<String, NamedQuery> namedQueries = new HashMap<>();
+        for (final NamedQuery namedQuery : namedQueries()) {
+            namedQueries.put(namedQuery.name(), namedQuery);
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET enable_seqscan = off");
+            }
+            try {
+                for (final String name : KEYSET_QUERIES) {
+                    final NamedQuery namedQuery = namedQueries.get(name);
+                    assertNotNull("No named query " + name, namedQuery);
+                    final String plan = explain(connection, sessionFactory, namedQuery);
+                    boolean seek = false;
+                    for (final String line : plan.split("\n")) {
+                        seek |= line.contains("Index Cond") && line.contains("ROW(date, id)");
+                    }
+                    assertTrue("No index condition on (date, id) in the plan of " + name + ":\n" + plan, seek);
+                }
+            } finally {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("RESET enable_seqscan");
+                }
+            }
+        }
+    }
+
+    private List<NamedQuery> namedQueries() {
+        final List<NamedQuery> namedQueries = new ArrayList<>();
+        for (final EntityType<?> entityType : entityManagerFactory.getMetamodel().getEntities()) {
+            final NamedQueries annotation = entityType.getJavaType().getAnnotation(NamedQueries.class);
+            if (annotation != null) {
+                Collections.addAll(namedQueries, annotation.value());
+            }
+        }
+        return namedQueries;
+    }
+
+    private String explain(final Connection connection, final SessionFactoryImplementor sessionFactory, final NamedQuery namedQuery) throws Exception {
+        final QueryTranslator translator = new ASTQueryTranslatorFactory()
+                .createQueryTranslator(namedQuery.name(), namedQuery.query(), Collections.emptyMap(), sessionFactory, null);
+        translator.compile(Collections.emptyMap(), false);
+        final ParameterTranslations parameterTranslations = translator.getParameterTranslations();
+
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + translator.getSQLString())) {
+            for (final Object name : parameterTranslations.getNamedParameterNames()) {
+                final String parameterName = (String) name;
+                final Object value = PARAMETER_VALUES.get(parameterName);
+                assertNotNull("No sample value for the parameter " + parameterName + " of " + namedQuery.name(), value);
+                for (final int location : parameterTranslations.getNamedParameterSqlLocations(parameterName)) {
+                    statement.setObject(location + 1, value);
+                }
+            }
+            final StringBuilder plan = new StringBuilder();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1)).append('\n');
+                }
+            }
+            assertTrue(plan.length() > 0);
+            return plan.toString();
+        }
+    }
+}
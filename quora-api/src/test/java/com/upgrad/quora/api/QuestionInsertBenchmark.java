@@ -0,0 +1,123 @@
+package com.upgrad.quora.api;
+
+import com.upgrad.quora.service.common.Uuids;
+import com.upgrad.quora.service.dao.QuestionDao;
+import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the insert throughput of the questions against the database configured for the application, such as the test database.
+ * A request of ROWS questions is stored the way the ids used to be generated, one INSERT ... RETURNING id round trip per row
+ * with the id drawn from the sequence by the database, and the way the bulk creation now stores it: ids allocated from the
+ * pooled-lo sequence in blocks of 50 and the inserts sent in JDBC batches, which the driver rewrites into multi-row inserts.
+ * Both run in one transaction per request on 8 threads, so the sequence is also contended as under load. The score is in rows per millisecond.
+ * <p>
+ * The questions are created for the user 1026 of the test data and deleted once the benchmark ends.
+ * Run the main method from the test classpath with the database running, e.g. from the IDE after <code>mvn -pl quora-api test-compile</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class QuestionInsertBenchmark {
+
+    private static final int ROWS = 100;
+    private static final int USER_ID = 1026;
+    private static final String CONTENT_PREFIX = "Insert benchmark question ";
+
+    private ConfigurableApplicationContext context;
+
+    private TransactionTemplate transactionTemplate;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private QuestionDao questionDao;
+
+    private UserDao userDao;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(QuoraApiApplication.class).web(WebApplicationType.NONE).run();
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        questionDao = context.getBean(QuestionDao.class);
+        userDao = context.getBean(UserDao.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jdbcTemplate.update("DELETE FROM question WHERE content LIKE '" + CONTENT_PREFIX + "%'");
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<Integer> insertRowByRow() {
+        return transactionTemplate.execute(status -> {
+            final Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            final List<Integer> ids = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                ids.add(jdbcTemplate.queryForObject("INSERT INTO question(uuid, content, date, user_id) VALUES (?, ?, ?, ?) RETURNING id",
+                        Integer.class, UUID.randomUUID(), CONTENT_PREFIX + i, now, USER_ID));
+            }
+            return ids;
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public List<QuestionEntity> insertInBatches() {
+        return transactionTemplate.execute(status -> {
+            final UserEntity user = userDao.getUserByPrimaryKey(USER_ID);
+            final LocalDateTime now = LocalDateTime.now();
+            final List<QuestionEntity> questions = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                final QuestionEntity question = new QuestionEntity();
+                question.setUuid(Uuids.timeOrdered().toString());
+                question.setContent(CONTENT_PREFIX + i);
+                question.setDate(now);
+                question.setUser(user);
+                questions.add(question);
+            }
+            questionDao.createQuestions(questions);
+            return questions;
+        });
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(QuestionInsertBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,147 @@
+package com.upgrad.quora.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.upgrad.quora.api.model.AnswerDetailsResponse;
+import com.upgrad.quora.api.model.QuestionDetailsResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares the serialization of pages of the question and answer listings by a plain ObjectMapper, which reads the
+ * properties of the models through reflection, with an ObjectMapper with the Afterburner module as configured by the application,
+ * and measures the cost of gzipping the page as Tomcat does for the responses above the compression threshold.
+ * The main method first prints the bytes on the wire of each page, uncompressed and gzipped.
+ * <p>
+ * Run the main method from the test classpath, e.g. from the IDE after <code>mvn -pl quora-api test-compile</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ResponseSerializationBenchmark {
+
+    private static final String QUESTION_CONTENT = "How do I keep the response times of a paginated listing flat while the table keeps growing every day?";
+    private static final String ANSWER_CONTENT = "Paginate by keyset on an index rather than by offset, so that every page costs the same whatever its position.";
+
+    @Param({"20", "100"})
+    private int pageSize;
+
+    private List<QuestionDetailsResponse> questions;
+
+    private List<AnswerDetailsResponse> answers;
+
+    private ObjectWriter reflectionWriter;
+
+    private ObjectWriter afterburnerWriter;
+
+    @Setup
+    public void setup() throws IOException {
+        questions = questions(pageSize);
+        answers = answers(pageSize);
+        reflectionWriter = new ObjectMapper().writer();
+        afterburnerWriter = new ObjectMapper().registerModule(new AfterburnerModule()).writer();
+        // serializers are built and cached by the first serialization, which is not measured
+        reflectionWriter.writeValueAsBytes(questions);
+        reflectionWriter.writeValueAsBytes(answers);
+        afterburnerWriter.writeValueAsBytes(questions);
+        afterburnerWriter.writeValueAsBytes(answers);
+    }
+
+    @Benchmark
+    public byte[] questionsWithReflection() throws IOException {
+        return reflectionWriter.writeValueAsBytes(questions);
+    }
+
+    @Benchmark
+    public byte[] questionsWithAfterburner() throws IOException {
+        return afterburnerWriter.writeValueAsBytes(questions);
+    }
+
+    @Benchmark
+    public byte[] questionsWithAfterburnerGzipped() throws IOException {
+        return gzip(afterburnerWriter.writeValueAsBytes(questions));
+    }
+
+    @Benchmark
+    public byte[] answersWithReflection() throws IOException {
+        return reflectionWriter.writeValueAsBytes(answers);
+    }
+
+    @Benchmark
+    public byte[] answersWithAfterburner() throws IOException {
+        return afterburnerWriter.writeValueAsBytes(answers);
+    }
+
+    @Benchmark
+    public byte[] answersWithAfterburnerGzipped() throws IOException {
+        return gzip(afterburnerWriter.writeValueAsBytes(answers));
+    }
+
+    private static List<QuestionDetailsResponse> questions(final int count) {
+        final List<QuestionDetailsResponse> questions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final QuestionDetailsResponse question = new QuestionDetailsResponse();
+            question.setId(UUID.randomUUID().toString());
+            question.setContent(QUESTION_CONTENT + " #" + i);
+            questions.add(question);
+        }
+        return questions;
+    }
+
+    private static List<AnswerDetailsResponse> answers(final int count) {
+        final List<AnswerDetailsResponse> answers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final AnswerDetailsResponse answer = new AnswerDetailsResponse();
+            answer.setId(UUID.randomUUID().toString());
+            answer.setQuestionContent(QUESTION_CONTENT);
+            answer.setAnswerContent(ANSWER_CONTENT + " #" + i);
+            answers.add(answer);
+        }
+        return answers;
+    }
+
+    private static byte[] gzip(final byte[] body) throws IOException {
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 2);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        }
+        return compressed.toByteArray();
+    }
+
+    public static void main(final String[] args) throws RunnerException, IOException {
+        final ObjectWriter writer = new ObjectMapper().registerModule(new AfterburnerModule()).writer();
+        for (final int count : new int[]{20, 100}) {
+            final byte[] questionPage = writer.writeValueAsBytes(questions(count));
+            final byte[] answerPage = writer.writeValueAsBytes(answers(count));
+            System.out.printf("question/all, %d questions: %d bytes, %d bytes gzipped%n", count, questionPage.length, gzip(questionPage).length);
+            System.out.printf("answer/all/{questionId}, %d answers: %d bytes, %d bytes gzipped%n", count, answerPage.length, gzip(answerPage).length);
+        }
+        new Runner(new OptionsBuilder().include(ResponseSerializationBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -1,17 +1,31 @@
 package com.upgrad.quora.api.controller;
 
 
+import com.jayway.jsonpath.JsonPath;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import javax.persistence.EntityManagerFactory;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -23,11 +37,17 @@ public class AnswerControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
 
     //This test case passes when you try to create the answer but the JWT token entered does not exist in the database.
     @Test
     public void createAnswerWithNonExistingAccessToken() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.post("/question/database_question_uuid/answer/create?answer=my_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "non_existing_access_token"))
+        mvc.perform(MockMvcRequestBuilders.post("/question/00000000-0000-7000-8001-000000001024/answer/create?answer=my_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "non_existing_access_token"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
     }
@@ -35,7 +55,7 @@ public class AnswerControllerTest {
     //This test case passes when you try to create the answer but the user corresponding to the JWT token entered is signed out of the application.
     @Test
     public void createAnswerWithSignedOutUser() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.post("/question/database_question_uuid/answer/create?answer=my_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken3"))
+        mvc.perform(MockMvcRequestBuilders.post("/question/00000000-0000-7000-8001-000000001024/answer/create?answer=my_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken3"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
     }
@@ -48,10 +68,68 @@ public class AnswerControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
     }
 
+    //This test case passes when you try to create answers in bulk and every answer of the request is rejected for its empty content.
+    @Test
+    public void createAnswersWithEmptyContent() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/question/00000000-0000-7000-8001-000000001024/answer/create/bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1")
+                .content("[{\"answer\":\"\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].status").value("ANSWER REJECTED"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].code").value("ANS-002"));
+    }
+
+    //This test case passes when you try to create answers in bulk for the question which does not exist in the database.
+    @Test
+    public void createAnswersForNonExistingQuestion() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/question/non_existing_question_uuid/answer/create/bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1")
+                .content("[{\"answer\":\"my_answer\"}]"))
+                .andExpect(status().isNotFound())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
+    }
+
+    //This test case passes when you create more answers in bulk than fit in a JDBC batch, and every answer is stored for the user and the question
+    //under the uuid returned at its index, including around the answer rejected in the middle of the request.
+    @Test
+    public void createAnswersInSeveralBatches() throws Exception {
+        final int count = 120;
+        final int rejected = 60;
+        final StringBuilder answers = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            answers.append(i == 0 ? "" : ",").append("{\"answer\":\"").append(i == rejected ? "" : "Bulk answer " + i).append("\"}");
+        }
+        answers.append(']');
+        try {
+            final String response = mvc.perform(MockMvcRequestBuilders.post("/question/00000000-0000-7000-8001-000000001024/answer/create/bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1")
+                    .content(answers.toString()))
+                    .andExpect(status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(count))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[" + rejected + "].code").value("ANS-002"))
+                    .andReturn().getResponse().getContentAsString();
+            final Set<String> uuids = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                assertEquals(i, (int) JsonPath.<Integer>read(response, "$[" + i + "].index"));
+                if (i == rejected) {
+                    continue;
+                }
+                assertEquals("ANSWER CREATED", JsonPath.read(response, "$[" + i + "].status"));
+                final String uuid = JsonPath.read(response, "$[" + i + "].id");
+                final Map<String, Object> row = jdbcTemplate.queryForMap("SELECT ans, user_id, question_id FROM answer WHERE uuid = CAST(? AS UUID)", uuid);
+                assertEquals("Bulk answer " + i, row.get("ans"));
+                assertEquals(1026, row.get("user_id"));
+                assertEquals(1024, row.get("question_id"));
+                uuids.add(uuid);
+            }
+            assertEquals(count - 1, uuids.size());
+            assertEquals(count - 1, (int) jdbcTemplate.queryForObject("SELECT count(*) FROM answer WHERE ans LIKE 'Bulk answer %'", Integer.class));
+        } finally {
+            jdbcTemplate.update("DELETE FROM answer WHERE ans LIKE 'Bulk answer %'");
+        }
+    }
+
     //This test case passes when you try to edit the answer but the JWT token entered does not exist in the database.
     @Test
     public void editAnswerWithNonExistingAccessToken() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.put("/answer/edit/database_answer_uuid?content=edited_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "non_existing_access_token"))
+        mvc.perform(MockMvcRequestBuilders.put("/answer/edit/00000000-0000-7000-8002-000000001024?content=edited_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "non_existing_access_token"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
     }
@@ -59,7 +137,7 @@ public class AnswerControllerTest {
     //This test case passes when you try to edit the answer and the JWT token entered exists in the database but the user corresponding to that JWT token is signed out.
     @Test
     public void editAnswerWithSignedOutUser() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.put("/answer/edit/database_answer_uuid?content=edited_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken3"))
+        mvc.perform(MockMvcRequestBuilders.put("/answer/edit/00000000-0000-7000-8002-000000001024?content=edited_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken3"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
     }
@@ -75,7 +153,7 @@ public class AnswerControllerTest {
     //This test case passes when you try to edit the answer and the JWT token entered exists in the database and the user corresponding to that JWT token is signed in but the corresponding user is not the owner of the answer.
     @Test
     public void editAnswerWithoutOwnership() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.put("/answer/edit/database_answer_uuid?content=edited_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken"))
+        mvc.perform(MockMvcRequestBuilders.put("/answer/edit/00000000-0000-7000-8002-000000001024?content=edited_answer").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-003"));
     }
@@ -83,7 +161,7 @@ public class AnswerControllerTest {
     //This test case passes when you try to delete the answer but the JWT token entered does not exist in the database.
     @Test
     public void deleteAnswerWithNonExistingAccessToken() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.delete("/answer/delete/database_answer_uuid").header("authorization", "non_existing_access_token"))
+        mvc.perform(MockMvcRequestBuilders.delete("/answer/delete/00000000-0000-7000-8002-000000001024").header("authorization", "non_existing_access_token"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
     }
@@ -91,7 +169,7 @@ public class AnswerControllerTest {
     //This test case passes when you try to delete the answer and the JWT token entered exists in the database but the user corresponding to that JWT token is signed out.
     @Test
     public void deleteAnswerWithSignedOutUser() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.delete("/answer/delete/database_answer_uuid").header("authorization", "database_accesstoken3"))
+        mvc.perform(MockMvcRequestBuilders.delete("/answer/delete/00000000-0000-7000-8002-000000001024").header("authorization", "database_accesstoken3"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
     }
@@ -107,15 +185,42 @@ public class AnswerControllerTest {
     //This test case passes when you try to delete the answer and the JWT token entered exists in the database and the user corresponding to that JWT token is signed in but the corresponding user is not the owner of the answer or he is not the admin.
     @Test
     public void deleteAnswerWithoutOwnership() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.delete("/answer/delete/database_answer_uuid").header("authorization", "database_accesstoken2"))
+        mvc.perform(MockMvcRequestBuilders.delete("/answer/delete/00000000-0000-7000-8002-000000001024").header("authorization", "database_accesstoken2"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-003"));
     }
 
+    //This test case passes when the answer to delete is read together with its owner in a single statement.
+    @Test
+    public void deleteAnswerWithoutOwnershipWithSingleStatement() throws Exception {
+        assertEquals(1, countStatements(MockMvcRequestBuilders.delete("/answer/delete/00000000-0000-7000-8002-000000001024").header("authorization", "database_accesstoken2")));
+    }
+
+    //This test case passes when the answers to a question are read with a single statement after the version of the answers, the question being found in the second-level cache.
+    @Test
+    public void getAllAnswersToQuestionWithVersionAndSingleStatement() throws Exception {
+        assertEquals(2, countStatements(MockMvcRequestBuilders.get("/answer/all/00000000-0000-7000-8001-000000001024").header("authorization", "database_accesstoken")));
+    }
+
+    //This test case passes when you get all the answers to a question again with the ETag of the previous response and only the version of the answers is read.
+    @Test
+    public void getAllAnswersToQuestionNotModified() throws Exception {
+        final String eTag = mvc.perform(MockMvcRequestBuilders.get("/answer/all/00000000-0000-7000-8001-000000001024").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        final MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get("/answer/all/00000000-0000-7000-8001-000000001024").header("authorization", "database_accesstoken")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag);
+        mvc.perform(request)
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        assertEquals(1, countStatements(request));
+    }
+
     //This test case passes when you try to get all the answers posted for a specific question but the JWT token entered does not exist in the database.
     @Test
     public void getAllAnswersToQuestionWithNonExistingAccessToken() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "non_existing_access_token"))
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/00000000-0000-7000-8001-000000001024").header("authorization", "non_existing_access_token"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
     }
@@ -123,11 +228,27 @@ public class AnswerControllerTest {
     //This test case passes when you try to get all the answers posted for a specific question and the JWT token entered exists in the database but the user corresponding to that JWT token is signed out.
     @Test
     public void getAllAnswersToQuestionWithSignedOutUser() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.get("/answer/all/database_question_uuid").header("authorization", "database_accesstoken3"))
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/00000000-0000-7000-8001-000000001024").header("authorization", "database_accesstoken3"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
     }
 
+    //This test case passes when you get the oldest answers posted for a specific question one at a time.
+    @Test
+    public void getAllAnswersToQuestionOldestFirst() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/00000000-0000-7000-8001-000000001024?sort=oldest&limit=1").header("authorization", "database_accesstoken"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1));
+    }
+
+    //This test case passes when you try to get all the answers posted for a specific question with a sort order that does not exist.
+    @Test
+    public void getAllAnswersToQuestionWithInvalidSortOrder() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/answer/all/00000000-0000-7000-8001-000000001024?sort=popular").header("authorization", "database_accesstoken"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("SRT-001"));
+    }
+
     //This test case passes when you try to get all the answers posted for a specific question which does not exist in the database.
     @Test
     public void getAllAnswersToNonExistingQuestion() throws Exception {
@@ -136,5 +257,12 @@ public class AnswerControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("QUES-001"));
     }
 
-
+    //Performs the request twice and returns the number of statements prepared by the second one. The first request resolves the access token into a cached session, so only the statements of the endpoint itself are counted.
+    private long countStatements(final MockHttpServletRequestBuilder request) throws Exception {
+        mvc.perform(request);
+        final Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mvc.perform(request);
+        return statistics.getPrepareStatementCount();
+    }
 }
@@ -1,17 +1,40 @@
 package com.upgrad.quora.api.controller;
 
 
+import com.upgrad.quora.service.datasource.ReadWriteRoutingDataSource;
+import com.upgrad.quora.service.datasource.ReadYourWritesTracker;
+import com.jayway.jsonpath.JsonPath;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import javax.persistence.EntityManagerFactory;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -23,6 +46,18 @@ public class QuestionControllerTest {
     @Autowired
     private MockMvc mvc;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ReadWriteRoutingDataSource routingDataSource;
+
+    @Autowired
+    private ReadYourWritesTracker readYourWritesTracker;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
 
     //This test case passes when you try to create the question but the JWT token entered does not exist in the database.
     @Test
@@ -40,6 +75,72 @@ public class QuestionControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
     }
 
+    //This test case passes when you try to create questions in bulk and every question of the request is rejected, each with its own reason.
+    @Test
+    public void createQuestionsWithInvalidContent() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/question/create/bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1")
+                .content("[{\"content\":\"\"},{\"content\":\"" + new String(new char[201]).replace('\0', 'q') + "\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].index").value(0))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].status").value("QUESTION REJECTED"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].code").value("QUES-002"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].code").value("QUES-003"));
+    }
+
+    //This test case passes when you try to create questions in bulk without any question in the request.
+    @Test
+    public void createQuestionsWithEmptyRequest() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/question/create/bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1").content("[]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("BLK-001"));
+    }
+
+    //This test case passes when you try to create questions in bulk but the user corresponding to the JWT token entered is signed out of the application.
+    @Test
+    public void createQuestionsWithSignedOutUser() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/question/create/bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken3").content("[{\"content\":\"my_question\"}]"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
+    }
+
+    //This test case passes when you create more questions in bulk than fit in a JDBC batch, and every question is stored for the user
+    //under the uuid returned at its index, including around the question rejected in the middle of the request.
+    @Test
+    public void createQuestionsInSeveralBatches() throws Exception {
+        final int count = 120;
+        final int rejected = 60;
+        final StringBuilder questions = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            questions.append(i == 0 ? "" : ",").append("{\"content\":\"").append(i == rejected ? "" : "Bulk content " + i).append("\"}");
+        }
+        questions.append(']');
+        try {
+            final String response = mvc.perform(MockMvcRequestBuilders.post("/question/create/bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1")
+                    .content(questions.toString()))
+                    .andExpect(status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(count))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[" + rejected + "].code").value("QUES-002"))
+                    .andReturn().getResponse().getContentAsString();
+            final Set<String> uuids = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                assertEquals(i, (int) JsonPath.<Integer>read(response, "$[" + i + "].index"));
+                if (i == rejected) {
+                    continue;
+                }
+                assertEquals("QUESTION CREATED", JsonPath.read(response, "$[" + i + "].status"));
+                final String uuid = JsonPath.read(response, "$[" + i + "].id");
+                final Map<String, Object> row = jdbcTemplate.queryForMap("SELECT content, user_id FROM question WHERE uuid = CAST(? AS UUID)", uuid);
+                assertEquals("Bulk content " + i, row.get("content"));
+                assertEquals(1026, row.get("user_id"));
+                uuids.add(uuid);
+            }
+            assertEquals(count - 1, uuids.size());
+            assertEquals(count - 1, (int) jdbcTemplate.queryForObject("SELECT count(*) FROM question WHERE content LIKE 'Bulk content %'", Integer.class));
+        } finally {
+            jdbcTemplate.update("DELETE FROM question WHERE content LIKE 'Bulk content %'");
+        }
+    }
+
     //This test case passes when you try to get the detail of all the questions and the JWT token entered exists in the database and the user corresponding to that JWT token is signed in.
     @Test
     public void getAllQuestions() throws Exception {
@@ -47,6 +148,116 @@ public class QuestionControllerTest {
                 .andExpect(status().isOk());
     }
 
+    //This test case passes when you ask for a page of a single question.
+    @Test
+    public void getAllQuestionsWithLimit() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/all?limit=1").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1));
+    }
+
+    //This test case passes when a page of questions is read with a single statement after the version of the questions, without loading the owners of the questions.
+    @Test
+    public void getAllQuestionsWithVersionAndSingleStatement() throws Exception {
+        assertEquals(2, countStatements(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken1")));
+    }
+
+    //This test case passes when you get all the questions again with the ETag of the previous response and only the version of the questions is read.
+    @Test
+    public void getAllQuestionsNotModified() throws Exception {
+        final String eTag = mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, startsWith("W/\"")))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        final MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken1")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag);
+        mvc.perform(request)
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag))
+                .andExpect(content().string(""));
+        assertEquals(1, countStatements(request));
+    }
+
+    //This test case passes when you get all the questions with an ETag which does not match the current version of the questions.
+    @Test
+    public void getAllQuestionsModified() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken1").header(HttpHeaders.IF_NONE_MATCH, "\"questions--1\""))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG));
+    }
+
+    //This test case passes when you try to get the detail of all the questions but the cursor entered was not issued by the application.
+    @Test
+    public void getAllQuestionsWithInvalidCursor() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/all?cursor=invalid_cursor").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("PAG-001"));
+    }
+
+    //This test case passes when you search the questions with a word of the content of the question in the database.
+    @Test
+    public void searchQuestions() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/search?q=question").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '00000000-0000-7000-8001-000000001024')]").exists());
+    }
+
+    //This test case passes when you search the questions with a word that no question contains.
+    @Test
+    public void searchQuestionsWithoutMatch() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/search?q=nonexistingword").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(0));
+    }
+
+    //This test case passes when you page through search results which all have the same rank and every one of them is returned exactly once.
+    @Test
+    public void searchQuestionsWithTiedRanksPageByPage() throws Exception {
+        final int count = 5;
+        try {
+            for (int i = 0; i < count; i++) {
+                jdbcTemplate.update("INSERT INTO question(uuid, content, date, user_id) VALUES (CAST(? AS UUID), 'Tiedrank question', now(), 1026)", UUID.randomUUID().toString());
+            }
+            final Set<String> uuids = new HashSet<>();
+            String cursor = null;
+            int pages = 0;
+            do {
+                MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get("/question/search?q=tiedrank&limit=2").header("authorization", "database_accesstoken1");
+                if (cursor != null) {
+                    request = request.param("cursor", cursor);
+                }
+                MvcResult mvcResult = mvc.perform(request).andExpect(status().isOk()).andReturn();
+                final List<String> ids = JsonPath.read(mvcResult.getResponse().getContentAsString(), "$[*].id");
+                for (final String id : ids) {
+                    assertTrue("Question " + id + " returned twice", uuids.add(id));
+                }
+                cursor = mvcResult.getResponse().getHeader("next-cursor");
+                pages++;
+            } while (cursor != null && pages <= count);
+            assertEquals(count, uuids.size());
+        } finally {
+            jdbcTemplate.update("DELETE FROM question WHERE content = 'Tiedrank question'");
+        }
+    }
+
+    //This test case passes when you export all the questions and the question in the database is streamed back.
+    @Test
+    public void exportAllQuestions() throws Exception {
+        MvcResult mvcResult = mvc.perform(MockMvcRequestBuilders.get("/question/export").header("authorization", "database_accesstoken1"))
+                .andExpect(request().asyncStarted()).andReturn();
+        mvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '00000000-0000-7000-8001-000000001024')]").exists());
+    }
+
+    //This test case passes when you try to export all the questions but the JWT token entered does not exist in the database.
+    @Test
+    public void exportAllQuestionsWithNonExistingAccessToken() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/export").header("authorization", "non_existing_access_token"))
+                .andExpect(status().isForbidden())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
+    }
+
     //This test case passes when you try to get the detail of all the questions but the JWT token entered does not exist in the database.
     @Test
     public void getAllQuestionsWithNonExistingAccessToken() throws Exception {
@@ -66,7 +277,7 @@ public class QuestionControllerTest {
     //This test case passes when you try to edit the question but the JWT token entered does not exist in the database.
     @Test
     public void editQuestionWithNonExistingAccessToken() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.put("/question/edit/database_question_uuid?content=edited_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "non_existing_access_token"))
+        mvc.perform(MockMvcRequestBuilders.put("/question/edit/00000000-0000-7000-8001-000000001024?content=edited_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "non_existing_access_token"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
     }
@@ -74,7 +285,7 @@ public class QuestionControllerTest {
     //This test case passes when you try to edit the question and the JWT token entered exists in the database but the user corresponding to that JWT token is signed out.
     @Test
     public void editQuestionWithWithSignedOutUser() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.put("/question/edit/database_question_uuid?content=edited_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken3"))
+        mvc.perform(MockMvcRequestBuilders.put("/question/edit/00000000-0000-7000-8001-000000001024?content=edited_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken3"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
     }
@@ -82,7 +293,7 @@ public class QuestionControllerTest {
     //This test case passes when you try to edit the question and the JWT token entered exists in the database and the user corresponding to that JWT token is signed in but the corresponding user is not the owner of the question.
     @Test
     public void editQuestionWithoutOwnership() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.put("/question/edit/database_question_uuid?content=edited_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken"))
+        mvc.perform(MockMvcRequestBuilders.put("/question/edit/00000000-0000-7000-8001-000000001024?content=edited_question").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-003"));
     }
@@ -98,7 +309,7 @@ public class QuestionControllerTest {
     //This test case passes when you try to delete the question but the JWT token entered does not exist in the database.
     @Test
     public void deleteQuestionWithNonExistingAccessToken() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.delete("/question/delete/database_question_uuid").header("authorization", "non_existing_access_token"))
+        mvc.perform(MockMvcRequestBuilders.delete("/question/delete/00000000-0000-7000-8001-000000001024").header("authorization", "non_existing_access_token"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
     }
@@ -106,7 +317,7 @@ public class QuestionControllerTest {
     //This test case passes when you try to delete the question and the JWT token entered exists in the database but the user corresponding to that JWT token is signed out.
     @Test
     public void deleteQuestionWithSignedOutUser() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.delete("/question/delete/database_question_uuid").header("authorization", "database_accesstoken3"))
+        mvc.perform(MockMvcRequestBuilders.delete("/question/delete/00000000-0000-7000-8001-000000001024").header("authorization", "database_accesstoken3"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
     }
@@ -114,12 +325,39 @@ public class QuestionControllerTest {
     //This test case passes when you try to delete the question and the JWT token entered exists in the database and the user corresponding to that JWT token is signed in but the corresponding user is not the owner of the question or he is not the admin.
     @Test
     public void deleteQuestionWithoutOwnership() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.delete("/question/delete/database_question_uuid").header("authorization", "database_accesstoken2"))
+        mvc.perform(MockMvcRequestBuilders.delete("/question/delete/00000000-0000-7000-8001-000000001024").header("authorization", "database_accesstoken2"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-003"));
     }
 
 
+    //This test case passes when the question to delete is read together with its owner in a single statement.
+    @Test
+    public void deleteQuestionWithoutOwnershipWithSingleStatement() throws Exception {
+        assertEquals(1, countStatements(MockMvcRequestBuilders.delete("/question/delete/00000000-0000-7000-8001-000000001024").header("authorization", "database_accesstoken2")));
+    }
+
+    //This test case passes when the read-only listing of the questions is served by the replica.
+    @Test
+    public void getAllQuestionsFromReplica() throws Exception {
+        final long replicaConnections = routingDataSource.getReplicaConnections();
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk());
+        assertTrue(routingDataSource.getReplicaConnections() > replicaConnections);
+    }
+
+    //This test case passes when the listing of the questions is served by the primary to a user who has just written.
+    @Test
+    public void getAllQuestionsFromPrimaryAfterWrite() throws Exception {
+        readYourWritesTracker.recordWrite("00000000-0000-7000-8000-000000001027");
+        final long replicaConnections = routingDataSource.getReplicaConnections();
+        final long primaryConnections = routingDataSource.getPrimaryConnections();
+        mvc.perform(MockMvcRequestBuilders.get("/question/all").header("authorization", "database_accesstoken2"))
+                .andExpect(status().isOk());
+        assertEquals(replicaConnections, routingDataSource.getReplicaConnections());
+        assertTrue(routingDataSource.getPrimaryConnections() > primaryConnections);
+    }
+
     //This test case passes when you try to delete the question which does not exist in the database.
     @Test
     public void deleteNoneExistingQuestion() throws Exception {
@@ -131,7 +369,7 @@ public class QuestionControllerTest {
     //This test case passes when you try to get all the questions posted by a specific user but the JWT token entered does not exist in the database.
     @Test
     public void getAllQuestionsByUserWithNonExistingAccessToken() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid1").header("authorization", "non_existing_access_token"))
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/00000000-0000-7000-8000-000000001026").header("authorization", "non_existing_access_token"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-001"));
     }
@@ -139,7 +377,7 @@ public class QuestionControllerTest {
     //This test case passes when you try to get all the questions posted by a specific user and the JWT token entered exists in the database but the user corresponding to that JWT token is signed out.
     @Test
     public void getAllQuestionsByUserWithSignedOutUser() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.get("/question/all/database_uuid1").header("authorization", "database_accesstoken3"))
+        mvc.perform(MockMvcRequestBuilders.get("/question/all/00000000-0000-7000-8000-000000001026").header("authorization", "database_accesstoken3"))
                 .andExpect(status().isForbidden())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATHR-002"));
     }
@@ -152,5 +390,12 @@ public class QuestionControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("USR-001"));
     }
 
-
+    //Performs the request twice and returns the number of statements prepared by the second one. The first request resolves the access token into a cached session, so only the statements of the endpoint itself are counted.
+    private long countStatements(final MockHttpServletRequestBuilder request) throws Exception {
+        mvc.perform(request);
+        final Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        mvc.perform(request);
+        return statistics.getPrepareStatementCount();
+    }
 }
@@ -0,0 +1,134 @@
+package com.upgrad.quora.api.controller;
+
+
+import com.jayway.jsonpath.JsonPath;
+import com.upgrad.quora.service.common.SearchCursor;
+import com.upgrad.quora.service.search.QuestionSearchIndex;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"quora.search.engine=memory", "quora.search.snapshot-path=target/question-search-index.snapshot"})
+@AutoConfigureMockMvc
+
+public class QuestionSearchIndexTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private QuestionSearchIndex questionSearchIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    //The index is loaded in the background once the application is ready.
+    @Before
+    public void awaitIndex() throws Exception {
+        for (int attempt = 0; attempt < 100 && !questionSearchIndex.isReady(); attempt++) {
+            Thread.sleep(100);
+        }
+        assertTrue(questionSearchIndex.isReady());
+    }
+
+    //This test case passes when you search the questions and the question in the database is found by the in-memory index.
+    @Test
+    public void searchQuestionsInMemory() throws Exception {
+        final long searches = questionSearchIndex.getSearches();
+        mvc.perform(MockMvcRequestBuilders.get("/question/search?q=Database_Question").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '00000000-0000-7000-8001-000000001024')]").exists());
+        assertEquals(searches + 1, questionSearchIndex.getSearches());
+    }
+
+    //This test case passes when you search the questions with a word that no question contains.
+    @Test
+    public void searchQuestionsInMemoryWithoutMatch() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/question/search?q=question+nonexistingword").header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(0));
+    }
+
+    //This test case passes when the next page of results ranked by the database is searched by the database, even though the index is loaded.
+    @Test
+    public void searchQuestionsWithCursorOfDatabase() throws Exception {
+        final long searches = questionSearchIndex.getSearches();
+        final String cursor = new SearchCursor(SearchCursor.Engine.DATABASE, Float.MAX_VALUE, Integer.MAX_VALUE).encode();
+        mvc.perform(MockMvcRequestBuilders.get("/question/search?q=Database_Question&cursor=" + cursor).header("authorization", "database_accesstoken1"))
+                .andExpect(status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$[?(@.id == '00000000-0000-7000-8001-000000001024')]").exists());
+        assertEquals(searches, questionSearchIndex.getSearches());
+    }
+
+    //This test case passes when a question is created between two pages of results and the next page still starts right after the previous one.
+    @Test
+    public void searchQuestionsInMemoryPageByPageWhileQuestionsAreCreated() throws Exception {
+        final int count = 4;
+        try {
+            createQuestions("Rankstable question", count);
+            final Set<String> uuids = new HashSet<>();
+            String cursor = null;
+            int pages = 0;
+            do {
+                MockHttpServletRequestBuilder request = MockMvcRequestBuilders.get("/question/search?q=rankstable&limit=2").header("authorization", "database_accesstoken1");
+                if (cursor != null) {
+                    request = request.param("cursor", cursor);
+                }
+                MvcResult mvcResult = mvc.perform(request).andExpect(status().isOk()).andReturn();
+                final List<String> ids = JsonPath.read(mvcResult.getResponse().getContentAsString(), "$[*].id");
+                for (final String id : ids) {
+                    assertTrue("Question " + id + " returned twice", uuids.add(id));
+                }
+                cursor = mvcResult.getResponse().getHeader("next-cursor");
+                pages++;
+                // any other question changes the collection which the ranks would depend on if they were weighted by rarity
+                createQuestions("Unrelated filler question", 1);
+            } while (cursor != null && pages <= count);
+            assertEquals(count, uuids.size());
+        } finally {
+            jdbcTemplate.update("DELETE FROM question WHERE content IN ('Rankstable question', 'Unrelated filler question')");
+            questionSearchIndex.rebuild();
+        }
+    }
+
+    private void createQuestions(final String content, final int count) throws Exception {
+        final StringBuilder questions = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            questions.append(i == 0 ? "" : ",").append("{\"content\":\"").append(content).append("\"}");
+        }
+        questions.append(']');
+        mvc.perform(MockMvcRequestBuilders.post("/question/create/bulk").contentType(MediaType.APPLICATION_JSON_UTF8_VALUE).header("authorization", "database_accesstoken1")
+                .content(questions.toString()))
+                .andExpect(status().isOk());
+    }
+
+    //This test case passes when the index written to the snapshot is read back instead of being rebuilt from the database.
+    @Test
+    public void reloadIndexFromSnapshot() throws Exception {
+        assertTrue(questionSearchIndex.writeSnapshot());
+        final int questionCount = questionSearchIndex.getQuestionCount();
+        assertTrue(questionSearchIndex.reload());
+        assertTrue(questionSearchIndex.getLoadedFromSnapshot());
+        assertEquals(questionCount, questionSearchIndex.getQuestionCount());
+    }
+}
@@ -8,9 +8,15 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 
+import java.util.Base64;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -24,7 +30,9 @@ public class UserControllerTest {
     //This test case passes when you signup with a username that already exists in the database.
     @Test
     public void signupWithRepeatedUserName() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=database_username&emailAddress=a&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+        MvcResult mvcResult = mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=database_username&emailAddress=a&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(request().asyncStarted()).andReturn();
+        mvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isConflict())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("SGR-001"));
     }
@@ -32,11 +40,49 @@ public class UserControllerTest {
     //This test case passes when you signup with an email that already exists in the database.
     @Test
     public void signupWithRepeatedEmail() throws Exception {
-        mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=non_existing_username&emailAddress=database_email&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+        MvcResult mvcResult = mvc.perform(MockMvcRequestBuilders.post("/user/signup?firstName=a&lastName=a&userName=non_existing_username&emailAddress=database_email&password=a&country=a&aboutMe=a&dob=a&contactNumber=a").contentType(MediaType.APPLICATION_JSON_UTF8))
+                .andExpect(request().asyncStarted()).andReturn();
+        mvc.perform(asyncDispatch(mvcResult))
                 .andExpect(status().isConflict())
                 .andExpect(MockMvcResultMatchers.jsonPath("code").value("SGR-002"));
     }
 
+    //This test case passes when you keep trying to signin with the same username until the attempts are throttled.
+    @Test
+    public void signinThrottledAfterRepeatedAttempts() throws Exception {
+        final String authorization = "Basic " + Base64.getEncoder().encodeToString("throttled_username:a".getBytes());
+        for (int attempt = 0; attempt < 10; attempt++) {
+            MvcResult mvcResult = mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", authorization))
+                    .andExpect(request().asyncStarted()).andReturn();
+            mvc.perform(asyncDispatch(mvcResult))
+                    .andExpect(status().isUnauthorized())
+                    .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATH-001"));
+        }
+        MvcResult mvcResult = mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", authorization))
+                .andExpect(request().asyncStarted()).andReturn();
+        mvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"))
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATH-003"));
+    }
+
+    //This test case passes when the attempts rejected for a throttled username do not use up the attempts of the client address.
+    @Test
+    public void signinThrottledUsernameLeavesClientAddressAttempts() throws Exception {
+        final String authorization = "Basic " + Base64.getEncoder().encodeToString("throttled_username_2:a".getBytes());
+        for (int attempt = 0; attempt < 60; attempt++) {
+            MvcResult mvcResult = mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", authorization))
+                    .andExpect(request().asyncStarted()).andReturn();
+            mvc.perform(asyncDispatch(mvcResult));
+        }
+        final String otherAuthorization = "Basic " + Base64.getEncoder().encodeToString("other_username:a".getBytes());
+        MvcResult mvcResult = mvc.perform(MockMvcRequestBuilders.post("/user/signin").header("authorization", otherAuthorization))
+                .andExpect(request().asyncStarted()).andReturn();
+        mvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isUnauthorized())
+                .andExpect(MockMvcResultMatchers.jsonPath("code").value("ATH-001"));
+    }
+
 
     //This test case passes when you try to signout but the JWT token entered does not exist in the database.
     @Test
@@ -0,0 +1,3 @@
+--Adds the revocations of the deleted users, written in the transaction of the deletion
+--A node which missed the notification of a deletion reloads them when it resyncs, the session reaper purges them once they have ended
+CREATE TABLE IF NOT EXISTS USER_REVOCATION(USER_UUID UUID NOT NULL, REVOKED_UNTIL TIMESTAMP NOT NULL, PRIMARY KEY(USER_UUID));
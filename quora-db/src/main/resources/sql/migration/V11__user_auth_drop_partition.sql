@@ -0,0 +1,4 @@
+--Adds the function which detaches a monthly partition from USER_AUTH and drops it, called by the session reaper of the application
+--The name is quoted on the server, and a table which is not a partition of USER_AUTH is refused
+--The function body is kept on one line because the sql-maven-plugin ends a statement at every line ending with a semicolon
+CREATE OR REPLACE FUNCTION USER_AUTH_DROP_PARTITION(PARTITION_NAME TEXT) RETURNS TEXT AS $$ BEGIN IF NOT EXISTS (SELECT 1 FROM pg_inherits WHERE inhparent = to_regclass('user_auth') AND inhrelid = to_regclass(quote_ident(PARTITION_NAME))) THEN RAISE EXCEPTION '% is not a partition of user_auth', PARTITION_NAME; END IF; EXECUTE format('ALTER TABLE USER_AUTH DETACH PARTITION %I', PARTITION_NAME); EXECUTE format('DROP TABLE %I', PARTITION_NAME); RETURN PARTITION_NAME; END; $$ LANGUAGE plpgsql;
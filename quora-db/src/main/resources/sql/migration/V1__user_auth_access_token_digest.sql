@@ -0,0 +1,17 @@
+--Adds the indexed SHA-256 digest of the access token to an existing USER_AUTH table and backfills it
+CREATE EXTENSION IF NOT EXISTS pgcrypto;
+
+ALTER TABLE USER_AUTH ADD COLUMN IF NOT EXISTS ACCESS_TOKEN_DIGEST CHAR(64);
+
+--The trigger is installed before the backfill so that sessions created meanwhile are not missed
+--The function body is kept on one line because the sql-maven-plugin ends a statement at every line ending with a semicolon
+CREATE OR REPLACE FUNCTION USER_AUTH_SET_ACCESS_TOKEN_DIGEST() RETURNS TRIGGER AS $$ BEGIN IF NEW.ACCESS_TOKEN_DIGEST IS NULL THEN NEW.ACCESS_TOKEN_DIGEST := encode(digest(NEW.ACCESS_TOKEN, 'sha256'), 'hex'); END IF; RETURN NEW; END; $$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS TRG_USER_AUTH_ACCESS_TOKEN_DIGEST ON USER_AUTH;
+CREATE TRIGGER TRG_USER_AUTH_ACCESS_TOKEN_DIGEST BEFORE INSERT ON USER_AUTH
+	FOR EACH ROW EXECUTE PROCEDURE USER_AUTH_SET_ACCESS_TOKEN_DIGEST();
+
+UPDATE USER_AUTH SET ACCESS_TOKEN_DIGEST = encode(digest(ACCESS_TOKEN, 'sha256'), 'hex') WHERE ACCESS_TOKEN_DIGEST IS NULL;
+
+CREATE UNIQUE INDEX IF NOT EXISTS UK_USER_AUTH_ACCESS_TOKEN_DIGEST ON USER_AUTH(ACCESS_TOKEN_DIGEST);
+ALTER TABLE USER_AUTH ALTER COLUMN ACCESS_TOKEN_DIGEST SET NOT NULL;
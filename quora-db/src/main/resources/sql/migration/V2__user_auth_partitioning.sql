@@ -0,0 +1,39 @@
+--Moves the sessions of an existing USER_AUTH table into a table partitioned by month of EXPIRES_AT (PostgreSQL 13 or later)
+--All sessions are copied while the old table is renamed away, so run it while the application is stopped
+ALTER TABLE USER_AUTH RENAME TO USER_AUTH_UNPARTITIONED;
+
+CREATE TABLE USER_AUTH(
+	ID BIGINT NOT NULL DEFAULT nextval('user_auth_id_seq'),
+	uuid VARCHAR(200) NOT NULL,
+	USER_ID INTEGER NOT NULL,
+	ACCESS_TOKEN VARCHAR(500) NOT NULL,
+	ACCESS_TOKEN_DIGEST CHAR(64) NOT NULL,
+	EXPIRES_AT TIMESTAMP NOT NULL,
+	LOGIN_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+	LOGOUT_AT TIMESTAMP NULL,
+	CONSTRAINT PK_USER_AUTH PRIMARY KEY (ID, EXPIRES_AT)
+) PARTITION BY RANGE (EXPIRES_AT);
+
+--Creates the partition of the month of the given day unless it exists and returns its name, also called by the session reaper of the application
+--The function body is kept on one line because the sql-maven-plugin ends a statement at every line ending with a semicolon
+CREATE OR REPLACE FUNCTION USER_AUTH_CREATE_PARTITION(MONTH_START DATE) RETURNS TEXT AS $$ DECLARE PARTITION_NAME TEXT := 'user_auth_p' || to_char(MONTH_START, 'YYYYMM'); BEGIN EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF USER_AUTH FOR VALUES FROM (%L) TO (%L)', PARTITION_NAME, date_trunc('month', MONTH_START)::date, (date_trunc('month', MONTH_START) + interval '1 month')::date); RETURN PARTITION_NAME; END; $$ LANGUAGE plpgsql;
+
+--Sessions which ended long ago are not worth a partition of their own, they are left to the reaper in the default partition
+SELECT USER_AUTH_CREATE_PARTITION(MONTH_START::date) FROM generate_series(date_trunc('month', now()), date_trunc('month', now()) + interval '2 months', interval '1 month') MONTH_START;
+CREATE TABLE USER_AUTH_DEFAULT PARTITION OF USER_AUTH DEFAULT;
+
+INSERT INTO USER_AUTH(ID, uuid, USER_ID, ACCESS_TOKEN, ACCESS_TOKEN_DIGEST, EXPIRES_AT, LOGIN_AT, LOGOUT_AT)
+	SELECT ID, uuid, USER_ID, ACCESS_TOKEN, ACCESS_TOKEN_DIGEST, EXPIRES_AT, LOGIN_AT, LOGOUT_AT FROM USER_AUTH_UNPARTITIONED;
+
+--The id sequence is handed over before the old table, which owns it, is dropped
+ALTER SEQUENCE user_auth_id_seq OWNED BY USER_AUTH.ID;
+DROP TABLE USER_AUTH_UNPARTITIONED CASCADE;
+
+ALTER TABLE USER_AUTH ADD CONSTRAINT FK_USER_AUTH_USER_ID FOREIGN KEY(USER_ID) REFERENCES USERS(ID) ON DELETE CASCADE ;
+
+--The partition key has to be part of every unique index of a partitioned table
+CREATE UNIQUE INDEX IF NOT EXISTS UK_USER_AUTH_ACCESS_TOKEN_DIGEST ON USER_AUTH(ACCESS_TOKEN_DIGEST, EXPIRES_AT);
+CREATE INDEX IF NOT EXISTS IDX_USER_AUTH_LOGOUT_AT ON USER_AUTH(LOGOUT_AT) WHERE LOGOUT_AT IS NOT NULL;
+
+CREATE TRIGGER TRG_USER_AUTH_ACCESS_TOKEN_DIGEST BEFORE INSERT ON USER_AUTH
+	FOR EACH ROW EXECUTE PROCEDURE USER_AUTH_SET_ACCESS_TOKEN_DIGEST();
@@ -0,0 +1,2 @@
+--Questions are listed newest first, one page after the other, by keyset on (date, id)
+CREATE INDEX IF NOT EXISTS IDX_QUESTION_DATE_ID ON QUESTION(date, id);
@@ -0,0 +1,2 @@
+--Answers of a question are listed newest or oldest first, one page after the other, by keyset on (date, id)
+CREATE INDEX IF NOT EXISTS IDX_ANSWER_QUESTION_ID_DATE_ID ON ANSWER(question_id, date, id);
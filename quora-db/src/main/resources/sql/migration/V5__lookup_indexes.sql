@@ -0,0 +1,14 @@
+--Indexes the columns the named queries of the application filter on, without touching the existing rows
+--The indexes are built CONCURRENTLY so that the tables stay writable meanwhile, which Flyway runs outside of a transaction;
+--a build which fails leaves an INVALID index behind, which IF NOT EXISTS would then skip, so drop it before running the migration again
+--The uuids are the natural ids of users, questions and answers, so they are also made unique; this fails if duplicates exist, which then have to be resolved by hand
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS UK_USERS_UUID ON USERS(uuid);
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS UK_QUESTION_UUID ON QUESTION(uuid);
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS UK_ANSWER_UUID ON ANSWER(uuid);
+
+--Foreign keys looked up by the listings and by the ON DELETE CASCADE of a user or a question
+--ANSWER(question_id) is already the leading column of IDX_ANSWER_QUESTION_ID_DATE_ID
+CREATE INDEX CONCURRENTLY IF NOT EXISTS IDX_QUESTION_USER_ID ON QUESTION(user_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS IDX_ANSWER_USER_ID ON ANSWER(user_id);
+--USER_AUTH is partitioned since V2 and Postgres cannot index a partitioned table concurrently, so its partitions are locked while it is built
+CREATE INDEX IF NOT EXISTS IDX_USER_AUTH_USER_ID ON USER_AUTH(user_id);
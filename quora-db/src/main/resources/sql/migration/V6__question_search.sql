@@ -0,0 +1,19 @@
+--Adds the text-search vector of the question content with its GIN index, used by the question search
+--The trigger computes the vector of each inserted row and of each row whose content changes, so writes only pay for their own row
+ALTER TABLE QUESTION ADD COLUMN IF NOT EXISTS SEARCH_VECTOR TSVECTOR;
+
+CREATE OR REPLACE FUNCTION QUESTION_SET_SEARCH_VECTOR() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.SEARCH_VECTOR := to_tsvector('english', COALESCE(NEW.CONTENT, ''));
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS TRG_QUESTION_SEARCH_VECTOR ON QUESTION;
+CREATE TRIGGER TRG_QUESTION_SEARCH_VECTOR BEFORE INSERT OR UPDATE OF CONTENT ON QUESTION
+    FOR EACH ROW EXECUTE PROCEDURE QUESTION_SET_SEARCH_VECTOR();
+
+--Backfills the existing questions
+UPDATE QUESTION SET SEARCH_VECTOR = to_tsvector('english', COALESCE(CONTENT, '')) WHERE SEARCH_VECTOR IS NULL;
+
+CREATE INDEX IF NOT EXISTS IDX_QUESTION_SEARCH_VECTOR ON QUESTION USING GIN(SEARCH_VECTOR);
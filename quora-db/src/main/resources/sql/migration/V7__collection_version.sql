@@ -0,0 +1,3 @@
+--Adds the version counters of the listings, bumped in the transaction of every change of a listed collection
+--The application derives the entity tags of the question and answer listings from them, so polling clients get a 304 after a single lookup
+CREATE TABLE IF NOT EXISTS COLLECTION_VERSION(NAME VARCHAR(100) NOT NULL, VERSION BIGINT NOT NULL, PRIMARY KEY(NAME));
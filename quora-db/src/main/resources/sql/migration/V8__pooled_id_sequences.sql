@@ -0,0 +1,13 @@
+--Makes the id sequences hand out blocks of 50 ids, which the application allocates from memory with the pooled-lo optimizer:
+--a value of the sequence is the lowest id of a block, so every node calls nextval once per 50 inserts instead of once per insert
+--The increment has to match the allocationSize of the entities; the columns keep their nextval default, so a row inserted by hand just takes the lowest id of a whole block
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
+ALTER SEQUENCE user_auth_id_seq INCREMENT BY 50;
+ALTER SEQUENCE question_id_seq INCREMENT BY 50;
+ALTER SEQUENCE answer_id_seq INCREMENT BY 50;
+
+--The next block starts right after the highest existing id, which also covers the rows inserted with explicit ids
+SELECT setval('users_id_seq', COALESCE(MAX(id), 0) + 1, false) FROM USERS;
+SELECT setval('user_auth_id_seq', COALESCE(MAX(id), 0) + 1, false) FROM USER_AUTH;
+SELECT setval('question_id_seq', COALESCE(MAX(id), 0) + 1, false) FROM QUESTION;
+SELECT setval('answer_id_seq', COALESCE(MAX(id), 0) + 1, false) FROM ANSWER;
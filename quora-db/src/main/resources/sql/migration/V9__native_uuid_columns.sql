@@ -0,0 +1,10 @@
+--Stores the uuids of users, sessions, questions and answers in native uuid columns, 16 bytes instead of a 36 character varchar, which also shrinks their unique indexes
+--A value which is not a uuid, such as hand-made data, is replaced by the uuid formed by its md5, the same in every table so that a session keeps the uuid of its user;
+--the clients which know such a row by its old value have to look it up again
+--Every column is rewritten and its indexes rebuilt under an exclusive lock of the table, so run it while the application is stopped
+CREATE FUNCTION pg_temp.TO_UUID(VALUE TEXT) RETURNS UUID AS $$ SELECT CASE WHEN VALUE ~* '^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$' THEN VALUE::uuid ELSE md5(VALUE)::uuid END $$ LANGUAGE sql IMMUTABLE;
+
+ALTER TABLE USERS ALTER COLUMN uuid TYPE UUID USING pg_temp.TO_UUID(uuid);
+ALTER TABLE USER_AUTH ALTER COLUMN uuid TYPE UUID USING pg_temp.TO_UUID(uuid);
+ALTER TABLE QUESTION ALTER COLUMN uuid TYPE UUID USING pg_temp.TO_UUID(uuid);
+ALTER TABLE ANSWER ALTER COLUMN uuid TYPE UUID USING pg_temp.TO_UUID(uuid);
@@ -1,30 +1,102 @@
+--The schema is created at the latest version of the migrations, and the flyway history is reset so that the setup profile can baseline it
+DROP TABLE IF EXISTS flyway_schema_history;
+
+
+--Ids are handed out by sequences in blocks of 50, which the application allocates from memory with the pooled-lo optimizer
+--The increment of a sequence has to match the allocationSize of its entity; every sequence is owned by its id column, so dropping the table drops it
+--The uuids are stored in native uuid columns; the application generates them time ordered, so new rows land at the end of the uuid indexes
 
 --USERS table is created to store the details of all the users
 DROP TABLE IF EXISTS USERS CASCADE;
-CREATE TABLE IF NOT EXISTS USERS(id SERIAL, uuid VARCHAR(200) NOT NULL ,firstName VARCHAR(30) NOT NULL , lastName VARCHAR(30) NOT NULL ,userName VARCHAR(30) UNIQUE NOT NULL,  email VARCHAR(50) UNIQUE NOT NULL ,password VARCHAR(255) NOT NULL, salt VARCHAR(200) NOT NULL ,country VARCHAR(30) ,aboutMe VARCHAR(50),dob VARCHAR(30), role VARCHAR(30),contactNumber VARCHAR(30), PRIMARY KEY (id));
+CREATE SEQUENCE IF NOT EXISTS users_id_seq INCREMENT BY 50;
+CREATE TABLE IF NOT EXISTS USERS(id INTEGER NOT NULL DEFAULT nextval('users_id_seq'), uuid UUID NOT NULL ,firstName VARCHAR(30) NOT NULL , lastName VARCHAR(30) NOT NULL ,userName VARCHAR(30) UNIQUE NOT NULL,  email VARCHAR(50) UNIQUE NOT NULL ,password VARCHAR(255) NOT NULL, salt VARCHAR(200) NOT NULL ,country VARCHAR(30) ,aboutMe VARCHAR(50),dob VARCHAR(30), role VARCHAR(30),contactNumber VARCHAR(30), PRIMARY KEY (id));
+ALTER SEQUENCE users_id_seq OWNED BY USERS.id;
+CREATE UNIQUE INDEX IF NOT EXISTS UK_USERS_UUID ON USERS(uuid);
 INSERT INTO users(
 	id, uuid, firstname, lastname, username, email, password, salt, country, aboutme, dob, role, contactnumber)
-	VALUES (1024,'rdtrdtdyt','Abhi','Mahajan','abhi','a@gmail.com','507FF5FED1CAC746','8Xt6jxoCI3MWsVaKY/1ySAp2qzlb2Z7P89+vDrb1o6U=', 'India' ,'I am @ UpGrad' ,'22-10-1995' , 'admin' , '1222333333' );
+	VALUES (1024,'00000000-0000-7000-8000-000000001024','Abhi','Mahajan','abhi','a@gmail.com','507FF5FED1CAC746','8Xt6jxoCI3MWsVaKY/1ySAp2qzlb2Z7P89+vDrb1o6U=', 'India' ,'I am @ UpGrad' ,'22-10-1995' , 'admin' , '1222333333' );
 
 --USER_AUTH table is created to store the login information of all the users
+--It is partitioned by month of EXPIRES_AT, so the sessions of a month that has ended are removed by dropping its partition (PostgreSQL 13 or later)
 DROP TABLE IF EXISTS USER_AUTH CASCADE;
+CREATE SEQUENCE IF NOT EXISTS user_auth_id_seq INCREMENT BY 50;
 CREATE TABLE IF NOT EXISTS USER_AUTH(
-	ID BIGSERIAL PRIMARY KEY,
-	uuid VARCHAR(200) NOT NULL,
+	ID BIGINT NOT NULL DEFAULT nextval('user_auth_id_seq'),
+	uuid UUID NOT NULL,
 	USER_ID INTEGER NOT NULL,
 	ACCESS_TOKEN VARCHAR(500) NOT NULL,
+	ACCESS_TOKEN_DIGEST CHAR(64) NOT NULL,
 	EXPIRES_AT TIMESTAMP NOT NULL,
 	LOGIN_AT TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
-	LOGOUT_AT TIMESTAMP NULL
-);
+	LOGOUT_AT TIMESTAMP NULL,
+	CONSTRAINT PK_USER_AUTH PRIMARY KEY (ID, EXPIRES_AT)
+) PARTITION BY RANGE (EXPIRES_AT);
+ALTER SEQUENCE user_auth_id_seq OWNED BY USER_AUTH.ID;
 
 ALTER TABLE USER_AUTH ADD CONSTRAINT FK_USER_AUTH_USER_ID FOREIGN KEY(USER_ID) REFERENCES USERS(ID) ON DELETE CASCADE ;
 
+--Creates the partition of the month of the given day unless it exists and returns its name, also called by the session reaper of the application
+CREATE OR REPLACE FUNCTION USER_AUTH_CREATE_PARTITION(MONTH_START DATE) RETURNS TEXT AS $$ DECLARE PARTITION_NAME TEXT := 'user_auth_p' || to_char(MONTH_START, 'YYYYMM'); BEGIN EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF USER_AUTH FOR VALUES FROM (%L) TO (%L)', PARTITION_NAME, date_trunc('month', MONTH_START)::date, (date_trunc('month', MONTH_START) + interval '1 month')::date); RETURN PARTITION_NAME; END; $$ LANGUAGE plpgsql;
+
+--Detaches a monthly partition from USER_AUTH and drops it, quoting its name on the server, called by the session reaper of the application
+CREATE OR REPLACE FUNCTION USER_AUTH_DROP_PARTITION(PARTITION_NAME TEXT) RETURNS TEXT AS $$ BEGIN IF NOT EXISTS (SELECT 1 FROM pg_inherits WHERE inhparent = to_regclass('user_auth') AND inhrelid = to_regclass(quote_ident(PARTITION_NAME))) THEN RAISE EXCEPTION '% is not a partition of user_auth', PARTITION_NAME; END IF; EXECUTE format('ALTER TABLE USER_AUTH DETACH PARTITION %I', PARTITION_NAME); EXECUTE format('DROP TABLE %I', PARTITION_NAME); RETURN PARTITION_NAME; END; $$ LANGUAGE plpgsql;
+
+SELECT USER_AUTH_CREATE_PARTITION(MONTH_START::date) FROM generate_series(date_trunc('month', now()), date_trunc('month', now()) + interval '2 months', interval '1 month') MONTH_START;
+
+--Sessions expiring outside of the monthly partitions, such as the test data, end up in the default partition
+CREATE TABLE IF NOT EXISTS USER_AUTH_DEFAULT PARTITION OF USER_AUTH DEFAULT;
+
+--Sessions are looked up by the SHA-256 digest of the access token, which is filled in by the application or by the trigger below
+--The partition key has to be part of every unique index of a partitioned table
+CREATE EXTENSION IF NOT EXISTS pgcrypto;
+CREATE UNIQUE INDEX IF NOT EXISTS UK_USER_AUTH_ACCESS_TOKEN_DIGEST ON USER_AUTH(ACCESS_TOKEN_DIGEST, EXPIRES_AT);
+CREATE INDEX IF NOT EXISTS IDX_USER_AUTH_LOGOUT_AT ON USER_AUTH(LOGOUT_AT) WHERE LOGOUT_AT IS NOT NULL;
+CREATE INDEX IF NOT EXISTS IDX_USER_AUTH_USER_ID ON USER_AUTH(USER_ID);
+
+--The function body is kept on one line because the sql-maven-plugin ends a statement at every line ending with a semicolon
+CREATE OR REPLACE FUNCTION USER_AUTH_SET_ACCESS_TOKEN_DIGEST() RETURNS TRIGGER AS $$ BEGIN IF NEW.ACCESS_TOKEN_DIGEST IS NULL THEN NEW.ACCESS_TOKEN_DIGEST := encode(digest(NEW.ACCESS_TOKEN, 'sha256'), 'hex'); END IF; RETURN NEW; END; $$ LANGUAGE plpgsql;
+
+CREATE TRIGGER TRG_USER_AUTH_ACCESS_TOKEN_DIGEST BEFORE INSERT ON USER_AUTH
+	FOR EACH ROW EXECUTE PROCEDURE USER_AUTH_SET_ACCESS_TOKEN_DIGEST();
+
 --QUESTION table is created to store the questions related information posted by any user in the Application
 DROP TABLE IF EXISTS QUESTION CASCADE;
-CREATE TABLE IF NOT EXISTS QUESTION(id SERIAL,uuid VARCHAR(200) NOT NULL, content VARCHAR(500) NOT NULL, date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE);
+CREATE SEQUENCE IF NOT EXISTS question_id_seq INCREMENT BY 50;
+CREATE TABLE IF NOT EXISTS QUESTION(id INTEGER NOT NULL DEFAULT nextval('question_id_seq'),uuid UUID NOT NULL, content VARCHAR(500) NOT NULL, date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE);
+ALTER SEQUENCE question_id_seq OWNED BY QUESTION.id;
+
+--Questions are listed newest first, one page after the other, by keyset on (date, id)
+CREATE INDEX IF NOT EXISTS IDX_QUESTION_DATE_ID ON QUESTION(date, id);
+--The uuid is the natural id, the user_id is looked up by the listings and by the ON DELETE CASCADE of a user
+CREATE UNIQUE INDEX IF NOT EXISTS UK_QUESTION_UUID ON QUESTION(uuid);
+CREATE INDEX IF NOT EXISTS IDX_QUESTION_USER_ID ON QUESTION(user_id);
+
+--Questions are searched by the text-search vector of their content, which the trigger below computes for every inserted row and every changed content
+ALTER TABLE QUESTION ADD COLUMN IF NOT EXISTS SEARCH_VECTOR TSVECTOR;
+CREATE OR REPLACE FUNCTION QUESTION_SET_SEARCH_VECTOR() RETURNS TRIGGER AS $$ BEGIN NEW.SEARCH_VECTOR := to_tsvector('english', COALESCE(NEW.CONTENT, '')); RETURN NEW; END; $$ LANGUAGE plpgsql;
+CREATE TRIGGER TRG_QUESTION_SEARCH_VECTOR BEFORE INSERT OR UPDATE OF CONTENT ON QUESTION
+	FOR EACH ROW EXECUTE PROCEDURE QUESTION_SET_SEARCH_VECTOR();
+CREATE INDEX IF NOT EXISTS IDX_QUESTION_SEARCH_VECTOR ON QUESTION USING GIN(SEARCH_VECTOR);
 
 
 --ANSWER table is created to store the answers related information in reply to any question posted in the Application
 DROP TABLE IF EXISTS ANSWER CASCADE;
-CREATE TABLE IF NOT EXISTS ANSWER(id SERIAL,uuid VARCHAR(200) NOT NULL, ans VARCHAR(255) NOT NULL,date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, question_id INTEGER NOT NULL , PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE, FOREIGN KEY (question_id) REFERENCES QUESTION(id) ON DELETE CASCADE);
+CREATE SEQUENCE IF NOT EXISTS answer_id_seq INCREMENT BY 50;
+CREATE TABLE IF NOT EXISTS ANSWER(id INTEGER NOT NULL DEFAULT nextval('answer_id_seq'),uuid UUID NOT NULL, ans VARCHAR(255) NOT NULL,date TIMESTAMP NOT NULL , user_id INTEGER NOT NULL, question_id INTEGER NOT NULL , PRIMARY KEY(id), FOREIGN KEY (user_id) REFERENCES USERS(id) ON DELETE CASCADE, FOREIGN KEY (question_id) REFERENCES QUESTION(id) ON DELETE CASCADE);
+ALTER SEQUENCE answer_id_seq OWNED BY ANSWER.id;
+
+--Answers of a question are listed newest or oldest first, one page after the other, by keyset on (date, id)
+CREATE INDEX IF NOT EXISTS IDX_ANSWER_QUESTION_ID_DATE_ID ON ANSWER(question_id, date, id);
+--The uuid is the natural id, the user_id is looked up by the listings and by the ON DELETE CASCADE of a user
+CREATE UNIQUE INDEX IF NOT EXISTS UK_ANSWER_UUID ON ANSWER(uuid);
+CREATE INDEX IF NOT EXISTS IDX_ANSWER_USER_ID ON ANSWER(user_id);
+
+--COLLECTION_VERSION table holds the version counters of the question and answer listings, bumped in the transaction of every change of a listed collection
+--A counter without row is at version 0
+DROP TABLE IF EXISTS COLLECTION_VERSION CASCADE;
+CREATE TABLE IF NOT EXISTS COLLECTION_VERSION(NAME VARCHAR(100) NOT NULL, VERSION BIGINT NOT NULL, PRIMARY KEY(NAME));
+
+--USER_REVOCATION table holds the revocations of the deleted users until every token issued to them has expired
+--Nodes reload them when they resync the session revocations they may have missed
+DROP TABLE IF EXISTS USER_REVOCATION CASCADE;
+CREATE TABLE IF NOT EXISTS USER_REVOCATION(USER_UUID UUID NOT NULL, REVOKED_UNTIL TIMESTAMP NOT NULL, PRIMARY KEY(USER_UUID));
@@ -1,25 +1,39 @@
 package com.upgrad.quora.service.business;
 
+import com.upgrad.quora.service.common.Page;
+import com.upgrad.quora.service.common.PageCursor;
+import com.upgrad.quora.service.common.PageLimits;
+import com.upgrad.quora.service.common.SortOrder;
 import com.upgrad.quora.service.dao.AnswerDao;
+import com.upgrad.quora.service.dao.CollectionVersionDao;
 import com.upgrad.quora.service.dao.QuestionDao;
-import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.dto.AnswerSummary;
+import com.upgrad.quora.service.dto.BulkCreateResult;
 import com.upgrad.quora.service.entity.AnswerEntity;
 import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.exception.AnswerNotFoundException;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidBulkRequestException;
+import com.upgrad.quora.service.exception.InvalidCursorException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
+import com.upgrad.quora.service.exception.InvalidSortOrderException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
 public class AnswerService {
 
+    // length of the ans column of AnswerEntity
+    private static final int ANSWER_CONTENT_MAX_LENGTH = 255;
+
     @Autowired
     private AnswerDao answerDao;
 
@@ -27,45 +41,88 @@ public class AnswerService {
     private QuestionDao questionDao;
 
     @Autowired
-    private UserDao userDao;
+    private CollectionVersionDao collectionVersionDao;
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Autowired
+    private PageLimits pageLimits;
+
+    @Value("${quora.bulk.max-items:1000}")
+    private int bulkMaxItems;
 
     @Transactional(propagation = Propagation.REQUIRED)
-    public AnswerEntity createAnswer(String questionId, AnswerEntity answerEntity, String accessToken) throws AuthorizationFailedException, InvalidQuestionException {
-        UserAuthEntity userAuthEntity = userDao.getUserAuthToken(accessToken);
-        if (userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
-        }
+    public AnswerEntity createAnswer(String questionId, AnswerEntity answerEntity, UserAuthEntity userAuthEntity) throws AuthorizationFailedException, InvalidQuestionException {
+        authenticationService.checkSignedIn(userAuthEntity);
 
         QuestionEntity questionEntity = questionDao.getQuestionById(questionId);
         if(questionEntity == null) {
             throw new InvalidQuestionException("QUES-001", "The question entered is invalid");
         }
 
-        if(userAuthEntity.getLogoutAt() != null && userAuthEntity.getLoginAt().isBefore(userAuthEntity.getLogoutAt())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to post an answer");
-        }
+        authenticationService.checkNotSignedOut(userAuthEntity, "User is signed out.Sign in first to post an answer");
 
         answerEntity.setDate(LocalDateTime.now());
         answerEntity.setUser(userAuthEntity.getUser());
         answerEntity.setQuestion(questionEntity);
+        collectionVersionDao.increment(CollectionVersionDao.answersTo(questionEntity.getId()));
         return answerDao.createAnswer(answerEntity);
     }
 
+    /**
+     * Creates the answers to the question in a single transaction, with the token checked once and the inserts sent in JDBC batches.
+     * Answers whose content is empty or too long are rejected and reported, the others are created.
+     *
+     * @param answerEntities new answers, with their uuid and content set
+     * @return the outcome of every answer, in the order of the request
+     */
     @Transactional(propagation = Propagation.REQUIRED)
-    public AnswerEntity editAnswer(String answerId, AnswerEntity answerEntity, String accessToken) throws AuthorizationFailedException, AnswerNotFoundException {
-        UserAuthEntity userAuthEntity = userDao.getUserAuthToken(accessToken);
-        if (userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+    public List<BulkCreateResult> createAnswers(String questionId, List<AnswerEntity> answerEntities, UserAuthEntity userAuthEntity)
+            throws AuthorizationFailedException, InvalidQuestionException, InvalidBulkRequestException {
+        authenticationService.authorize(userAuthEntity, "User is signed out.Sign in first to post an answer");
+        if (answerEntities.isEmpty() || answerEntities.size() > bulkMaxItems) {
+            throw new InvalidBulkRequestException("BLK-001", "A bulk request must contain between 1 and " + bulkMaxItems + " items");
         }
+        QuestionEntity questionEntity = questionDao.getQuestionById(questionId);
+        if(questionEntity == null) {
+            throw new InvalidQuestionException("QUES-001", "The question entered is invalid");
+        }
+        final LocalDateTime now = LocalDateTime.now();
+        final List<BulkCreateResult> results = new ArrayList<>();
+        final List<AnswerEntity> validAnswers = new ArrayList<>();
+        for (int i = 0; i < answerEntities.size(); i++) {
+            final AnswerEntity answerEntity = answerEntities.get(i);
+            final String content = answerEntity.getAns();
+            if (content == null || content.trim().isEmpty()) {
+                results.add(BulkCreateResult.rejected(i, "ANS-002", "Answer content is empty"));
+            } else if (content.length() > ANSWER_CONTENT_MAX_LENGTH) {
+                results.add(BulkCreateResult.rejected(i, "ANS-003", "Answer content is longer than " + ANSWER_CONTENT_MAX_LENGTH + " characters"));
+            } else {
+                answerEntity.setDate(now);
+                answerEntity.setUser(userAuthEntity.getUser());
+                answerEntity.setQuestion(questionEntity);
+                validAnswers.add(answerEntity);
+                results.add(BulkCreateResult.created(i, answerEntity.getUuid()));
+            }
+        }
+        if (!validAnswers.isEmpty()) {
+            collectionVersionDao.increment(CollectionVersionDao.answersTo(questionEntity.getId()));
+            answerDao.createAnswers(validAnswers);
+        }
+        return results;
+    }
+
+    @Transactional(propagation = Propagation.REQUIRED)
+    public AnswerEntity editAnswer(String answerId, AnswerEntity answerEntity, UserAuthEntity userAuthEntity) throws AuthorizationFailedException, AnswerNotFoundException {
+        authenticationService.checkSignedIn(userAuthEntity);
 
         AnswerEntity answerEntityById = answerDao.getAnswerById(answerId);
         if(answerEntityById == null) {
             throw new AnswerNotFoundException("ANS-001", "Entered answer uuid does not exist");
         }
 
-        if(userAuthEntity.getLogoutAt() != null && userAuthEntity.getLoginAt().isBefore(userAuthEntity.getLogoutAt())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to edit an answer");
-        }
+        authenticationService.checkNotSignedOut(userAuthEntity, "User is signed out.Sign in first to edit an answer");
 
         if (!answerEntityById.getUuid().equals(userAuthEntity.getUuid())) {
             throw new AuthorizationFailedException("ATHR-003", "Only the answer owner can edit the answer");
@@ -73,22 +130,15 @@ public class AnswerService {
 
         answerEntityById.setAns(answerEntity.getAns());
         answerEntityById.setDate(LocalDateTime.now());
+        collectionVersionDao.increment(CollectionVersionDao.answersTo(answerEntityById.getQuestion().getId()));
         return answerDao.updateAnswer(answerEntityById);
     }
 
     @Transactional(propagation = Propagation.REQUIRED)
-    public AnswerEntity deleteAnswer(String answerId, String accessToken) throws AuthorizationFailedException, AnswerNotFoundException {
-        UserAuthEntity userAuthEntity = userDao.getUserAuthToken(accessToken);
-
-        if(userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
-        }
-
-        if(userAuthEntity.getLogoutAt() != null && userAuthEntity.getLoginAt().isBefore(userAuthEntity.getLogoutAt())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to delete an answer");
-        }
+    public AnswerEntity deleteAnswer(String answerId, UserAuthEntity userAuthEntity) throws AuthorizationFailedException, AnswerNotFoundException {
+        authenticationService.authorize(userAuthEntity, "User is signed out.Sign in first to delete an answer");
 
-        AnswerEntity answerEntity = answerDao.getAnswerById(answerId);
+        AnswerEntity answerEntity = answerDao.getAnswerById(answerId, AnswerEntity.WITH_USER);
         if(answerEntity == null) {
             throw new AnswerNotFoundException("ANS-001", "Entered answer uuid does not exist");
         }
@@ -96,22 +146,48 @@ public class AnswerService {
         if(!(answerEntity.getUser().getUuid().equals(userAuthEntity.getUuid())) && !(answerEntity.getUser().getRole().equalsIgnoreCase("ADMIN"))) {
             throw new AuthorizationFailedException("ATHR-003", "Only the answer owner or admin can delete the answer");
         }
+        collectionVersionDao.increment(CollectionVersionDao.answersTo(answerEntity.getQuestion().getId()));
         return answerDao.deleteAnswer(answerEntity);
     }
 
-    @Transactional(propagation = Propagation.REQUIRED)
-    public List<AnswerEntity> getAllAnswersByQuestionId(String accessToken, String questionId) throws AuthorizationFailedException, InvalidQuestionException {
-        UserAuthEntity userAuthEntity = userDao.getUserAuthToken(accessToken);
-        if(userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
-        }
-        if(userAuthEntity.getLogoutAt() != null && userAuthEntity.getLoginAt().isBefore(userAuthEntity.getLogoutAt())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to get the answers");
+    /**
+     * Returns the entity tag of the listing of the answers to the question, which changes whenever an answer to the question
+     * or the question itself changes. It costs a single counter lookup once the question is in the second-level cache.
+     * The tag has to be read before the answers: a change committed in between then only makes the next poll read them again.
+     * The tag is weak, as it stands for the content whether the response is gzipped or not.
+     */
+    @Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+    public String getAllAnswersETag(UserAuthEntity userAuthEntity, String questionId) throws AuthorizationFailedException, InvalidQuestionException {
+        authenticationService.authorize(userAuthEntity, "User is signed out.Sign in first to get the answers");
+        QuestionEntity questionEntity = questionDao.getQuestionById(questionId);
+        if(questionEntity == null) {
+            throw new InvalidQuestionException("QUES-001", "The question with entered uuid whose details are to be seen does not exist");
         }
+        return "W/\"answers-" + questionEntity.getId() + "-"
+                + collectionVersionDao.getVersion(CollectionVersionDao.ANSWERS, CollectionVersionDao.answersTo(questionEntity.getId())) + "\"";
+    }
+
+    /**
+     * Returns one page of the answers to the question.
+     *
+     * @param sort     "newest" (default) or "oldest"
+     * @param cursor   opaque cursor returned with the previous page, null for the first page
+     * @param pageSize page size asked for by the client, null for the default one
+     */
+    @Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+    public Page<AnswerSummary> getAllAnswersByQuestionId(UserAuthEntity userAuthEntity, String questionId, String sort, String cursor, Integer pageSize)
+            throws AuthorizationFailedException, InvalidQuestionException, InvalidSortOrderException, InvalidCursorException {
+        authenticationService.authorize(userAuthEntity, "User is signed out.Sign in first to get the answers");
         QuestionEntity questionEntity = questionDao.getQuestionById(questionId);
         if(questionEntity == null) {
             throw new InvalidQuestionException("QUES-001", "The question with entered uuid whose details are to be seen does not exist");
         }
-        return answerDao.getAllAnswersByQuestionId(questionId);
+        final SortOrder sortOrder = SortOrder.fromParameter(sort, SortOrder.NEWEST);
+        if (sortOrder == null) {
+            throw new InvalidSortOrderException("SRT-001", "Entered sort order is not valid, use newest or oldest");
+        }
+        final PageCursor after = PageCursor.decode(cursor);
+        final int limit = pageLimits.resolve(pageSize);
+        return Page.of(answerDao.getAnswersByQuestion(questionEntity, sortOrder, after, limit + 1), limit, answer -> new PageCursor(answer.getDate(), answer.getId()));
     }
 }
@@ -0,0 +1,188 @@
+package com.upgrad.quora.service.business;
+
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.Claim;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.upgrad.quora.service.cache.SessionRevocationChannel;
+import com.upgrad.quora.service.cache.TokenDenyList;
+import com.upgrad.quora.service.common.TokenDigest;
+import com.upgrad.quora.service.common.Uuids;
+import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.entity.UserAuthEntity;
+import com.upgrad.quora.service.entity.UserEntity;
+import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service class which resolves access tokens into user sessions and issues new tokens.
+ * <p>
+ * In the default "database" mode every token is looked up in the user_auth table (through the session cache).
+ * In the "jwt" mode tokens are verified locally with the keys of the JwtKeyRing, so a request is authenticated
+ * without touching the database; tokens revoked by sign out are kept in an in-memory deny-list until they expire.
+ * Tokens are signed with the active key of the ring in both modes.
+ * Revocations are broadcast to the other nodes through the SessionRevocationChannel.
+ */
+@Service
+public class AuthenticationService {
+
+    public static final String DATABASE_MODE = "database";
+    public static final String JWT_MODE = "jwt";
+
+    /**
+     * Lifetime of the access tokens issued at sign in.
+     */
+    public static final long ACCESS_TOKEN_LIFETIME_HOURS = 8;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private TokenDenyList tokenDenyList;
+
+    @Autowired
+    private SessionRevocationChannel sessionRevocationChannel;
+
+    private final boolean jwtMode;
+
+    private final JwtKeyRing keyRing;
+
+    public AuthenticationService(@Value("${quora.auth.mode:" + DATABASE_MODE + "}") final String mode,
+                                 final JwtKeyRing keyRing) {
+        this.keyRing = keyRing;
+        if (JWT_MODE.equalsIgnoreCase(mode)) {
+            if (!keyRing.isConfigured()) {
+                throw new IllegalStateException("quora.auth.jwt.secret or quora.auth.jwt.keys must be set when quora.auth.mode is " + JWT_MODE);
+            }
+            this.jwtMode = true;
+        } else if (DATABASE_MODE.equalsIgnoreCase(mode)) {
+            this.jwtMode = false;
+        } else {
+            throw new IllegalStateException("Unsupported quora.auth.mode: " + mode);
+        }
+    }
+
+    /**
+     * This method resolves the access token into the session of the signed in user.
+     *
+     * @param accessToken access token sent by the client
+     * @return session of the user or null if the token is unknown, invalid or revoked
+     */
+    public UserAuthEntity authenticate(final String accessToken) {
+        if (!jwtMode) {
+            return userDao.getUserAuthToken(accessToken);
+        }
+
+        final DecodedJWT decodedJWT;
+        try {
+            decodedJWT = keyRing.verifyToken(accessToken);
+        } catch (JWTVerificationException e) {
+            return null;
+        }
+        if (tokenDenyList.isRevoked(TokenDigest.sha256Hex(accessToken))) {
+            return null;
+        }
+        final List<String> audience = decodedJWT.getAudience();
+        if (audience == null || audience.isEmpty()) {
+            return null;
+        }
+
+        final String userUuid = audience.get(0);
+        // tokens issued before the uuids of the users were rewritten into native uuids name users which no longer exist
+        if (Uuids.parse(userUuid) == null || tokenDenyList.isUserRevoked(userUuid)) {
+            return null;
+        }
+        final Claim userIdClaim = decodedJWT.getClaim(JwtTokenProvider.USER_ID_CLAIM);
+        final UserEntity user = userIdClaim.isNull() ? userDao.getUserById(userUuid) : userDao.getUserByPrimaryKey(userIdClaim.asInt());
+        if (user == null || !userUuid.equals(user.getUuid())) {
+            return null;
+        }
+
+        final UserAuthEntity userAuthEntity = new UserAuthEntity();
+        userAuthEntity.setUuid(userUuid);
+        userAuthEntity.setUser(user);
+        userAuthEntity.setAccessToken(accessToken);
+        userAuthEntity.setLoginAt(LocalDateTime.ofInstant(decodedJWT.getIssuedAt().toInstant(), ZoneId.systemDefault()));
+        userAuthEntity.setExpiresAt(LocalDateTime.ofInstant(decodedJWT.getExpiresAt().toInstant(), ZoneId.systemDefault()));
+        return userAuthEntity;
+    }
+
+    /**
+     * This method checks that the session exists and has not been signed out.
+     *
+     * @param userAuthEntity   session resolved from the access token, may be null
+     * @param signedOutMessage error message used when the user has signed out
+     * @throws AuthorizationFailedException ATHR-001 when there is no session, ATHR-002 when it has been signed out
+     */
+    public void authorize(final UserAuthEntity userAuthEntity, final String signedOutMessage) throws AuthorizationFailedException {
+        checkSignedIn(userAuthEntity);
+        checkNotSignedOut(userAuthEntity, signedOutMessage);
+    }
+
+    public void checkSignedIn(final UserAuthEntity userAuthEntity) throws AuthorizationFailedException {
+        if (userAuthEntity == null) {
+            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+        }
+    }
+
+    public void checkNotSignedOut(final UserAuthEntity userAuthEntity, final String signedOutMessage) throws AuthorizationFailedException {
+        if (userAuthEntity.getLogoutAt() != null && userAuthEntity.getLoginAt().isBefore(userAuthEntity.getLogoutAt())) {
+            throw new AuthorizationFailedException("ATHR-002", signedOutMessage);
+        }
+    }
+
+    /**
+     * This method issues a new access token for the user.
+     *
+     * @param userEntity      user who signed in
+     * @param issuedDateTime  current time
+     * @param expiresDateTime expiry time of the token
+     * @return JWT access token signed with the active key of the key ring
+     */
+    public String issueToken(final UserEntity userEntity, final ZonedDateTime issuedDateTime, final ZonedDateTime expiresDateTime) {
+        final JwtTokenProvider provider = keyRing.getActiveProvider();
+        if (jwtMode) {
+            return provider.generateToken(userEntity.getUuid(), userEntity.getId(), issuedDateTime, expiresDateTime);
+        }
+        return provider.generateToken(userEntity.getUuid(), issuedDateTime, expiresDateTime);
+    }
+
+    /**
+     * This method makes sure the signed out session is no longer accepted by this node, and by the other nodes once the transaction has committed.
+     *
+     * @param userAuthEntity session which was signed out
+     */
+    public void revoke(final UserAuthEntity userAuthEntity) {
+        final String accessTokenDigest = userAuthEntity.getAccessTokenDigest() != null ? userAuthEntity.getAccessTokenDigest() : TokenDigest.sha256Hex(userAuthEntity.getAccessToken());
+        final long expiresAtMillis = userAuthEntity.getExpiresAt() != null ? userAuthEntity.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : System.currentTimeMillis() + TimeUnit.HOURS.toMillis(ACCESS_TOKEN_LIFETIME_HOURS);
+        userDao.evictAuthToken(userAuthEntity.getAccessToken());
+        if (jwtMode) {
+            tokenDenyList.revoke(accessTokenDigest, expiresAtMillis);
+        }
+        sessionRevocationChannel.publishSession(accessTokenDigest, expiresAtMillis);
+    }
+
+    /**
+     * This method makes sure no session of the deleted user is accepted any more, on this node and on the other nodes once the transaction has committed.
+     *
+     * @param userUuid uuid of the deleted user
+     */
+    public void revokeUser(final String userUuid) {
+        // every token issued before the deletion has expired once a full token lifetime has passed
+        final long untilMillis = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(ACCESS_TOKEN_LIFETIME_HOURS);
+        userDao.createUserRevocation(userUuid, LocalDateTime.ofInstant(Instant.ofEpochMilli(untilMillis), ZoneId.systemDefault()));
+        if (jwtMode) {
+            tokenDenyList.revokeUser(userUuid, untilMillis);
+        }
+        sessionRevocationChannel.publishUser(userUuid, untilMillis);
+    }
+}
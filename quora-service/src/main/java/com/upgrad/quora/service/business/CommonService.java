@@ -16,16 +16,12 @@ public class CommonService {
     @Autowired
     private UserDao userDao;
 
-    @Transactional(propagation = Propagation.REQUIRED)
-    public UserEntity getUserProfile(final String userId, final String accessToken) throws AuthorizationFailedException, UserNotFoundException {
-        UserAuthEntity userAuthEntity = userDao.getUserAuthToken(accessToken);
-        if (userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
-        }
+    @Autowired
+    private AuthenticationService authenticationService;
 
-        if(userAuthEntity.getLogoutAt() != null && userAuthEntity.getLoginAt().isBefore(userAuthEntity.getLogoutAt())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to get user details");
-        }
+    @Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+    public UserEntity getUserProfile(final String userId, final UserAuthEntity userAuthEntity) throws AuthorizationFailedException, UserNotFoundException {
+        authenticationService.authorize(userAuthEntity, "User is signed out.Sign in first to get user details");
 
         UserEntity userEntity = userDao.getUserById(userId);
         if(userEntity == null) {
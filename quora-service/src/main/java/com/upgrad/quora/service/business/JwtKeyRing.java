@@ -0,0 +1,135 @@
+package com.upgrad.quora.service.business;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Server side signing keys of the access tokens, identified by key id.
+ * <p>
+ * New tokens are signed with the active key, while tokens signed with any other key of the ring are still accepted,
+ * so a key can be rotated by adding a new one, making it active and removing the old one once its tokens have expired.
+ * When no key is configured a random key is generated at startup; such tokens are only good for the "database"
+ * authentication mode, where a token is accepted because it is stored in user_auth rather than because of its signature.
+ */
+@Component
+@ConfigurationProperties(prefix = "quora.auth.jwt")
+public class JwtKeyRing {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JwtKeyRing.class);
+
+    public static final String DEFAULT_KEY_ID = "default";
+
+    private static final int GENERATED_SECRET_BYTES = 64;
+
+    private Map<String, String> keys = new LinkedHashMap<>();
+
+    private String activeKeyId;
+
+    private String secret;
+
+    private Map<String, JwtTokenProvider> providers = Collections.emptyMap();
+
+    private JwtTokenProvider activeProvider;
+
+    private boolean generated;
+
+    @PostConstruct
+    public void init() {
+        final Map<String, String> secrets = new LinkedHashMap<>(keys);
+        if (StringUtils.isNotBlank(secret)) {
+            secrets.putIfAbsent(DEFAULT_KEY_ID, secret);
+        }
+
+        String active = activeKeyId;
+        if (secrets.isEmpty()) {
+            final byte[] randomSecret = new byte[GENERATED_SECRET_BYTES];
+            new SecureRandom().nextBytes(randomSecret);
+            active = "generated-" + Long.toHexString(System.currentTimeMillis());
+            secrets.put(active, Base64.getEncoder().encodeToString(randomSecret));
+            generated = true;
+            LOGGER.info("No access token signing key is configured, tokens are signed with the generated key {}", active);
+        } else if (StringUtils.isBlank(active)) {
+            active = secrets.size() == 1 ? secrets.keySet().iterator().next() : null;
+        }
+        if (active == null || !secrets.containsKey(active)) {
+            throw new IllegalStateException("quora.auth.jwt.active-key-id must name one of the keys in quora.auth.jwt.keys");
+        }
+
+        final Map<String, JwtTokenProvider> ring = new LinkedHashMap<>();
+        for (final Map.Entry<String, String> key : secrets.entrySet()) {
+            if (StringUtils.isBlank(key.getValue())) {
+                throw new IllegalStateException("quora.auth.jwt.keys." + key.getKey() + " has no secret");
+            }
+            ring.put(key.getKey(), new JwtTokenProvider(key.getKey(), key.getValue()));
+        }
+        providers = Collections.unmodifiableMap(ring);
+        activeProvider = providers.get(active);
+    }
+
+    /**
+     * @return provider of the key which signs new tokens
+     */
+    public JwtTokenProvider getActiveProvider() {
+        return activeProvider;
+    }
+
+    /**
+     * This method verifies the token with the key named in its header.
+     *
+     * @param token - JWT token
+     * @return - decoded JWT token
+     * @throws JWTVerificationException - if the token is malformed, signed with an unknown key, tampered with, issued by someone else or expired
+     */
+    public DecodedJWT verifyToken(final String token) throws JWTVerificationException {
+        final String keyId = JWT.decode(token).getKeyId();
+        final JwtTokenProvider provider = keyId == null ? null : providers.get(keyId);
+        if (provider == null) {
+            throw new JWTVerificationException("The token was not signed with a key of this server");
+        }
+        return provider.verifyToken(token);
+    }
+
+    /**
+     * @return true if the keys come from the configuration, so tokens stay valid across restarts and nodes
+     */
+    public boolean isConfigured() {
+        return !generated;
+    }
+
+    public Map<String, String> getKeys() {
+        return keys;
+    }
+
+    public void setKeys(final Map<String, String> keys) {
+        this.keys = keys;
+    }
+
+    public String getActiveKeyId() {
+        return activeKeyId;
+    }
+
+    public void setActiveKeyId(final String activeKeyId) {
+        this.activeKeyId = activeKeyId;
+    }
+
+    public String getSecret() {
+        return secret;
+    }
+
+    public void setSecret(final String secret) {
+        this.secret = secret;
+    }
+}
@@ -1,34 +1,47 @@
 package com.upgrad.quora.service.business;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTCreator;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.upgrad.quora.service.common.GenericErrorCode;
 import com.upgrad.quora.service.common.UnexpectedException;
 
 import java.time.ZonedDateTime;
-import java.time.temporal.ChronoField;
 import java.util.Date;
-import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * This class is used in the project to provide JWT token after successful authentication
+ * This class is used in the project to provide JWT token after successful authentication.
+ * One instance exists per signing key of the JwtKeyRing; the signing algorithm and the verifier are built once and shared by all threads.
  */
 public class JwtTokenProvider {
     private static final String TOKEN_ISSUER = "https://quora.io";
+    public static final String USER_ID_CLAIM = "uid";
 
+    private final String keyId;
     private final Algorithm algorithm;
+    private final JWTVerifier verifier;
 
     /**
-     * A constructor for JwtTokenProvider class which receives user password as an argument to be used in the signature part of JWT access token.
+     * A constructor for JwtTokenProvider class which receives the id and the secret of a server signing key.
+     * The key id is written in the header of every token so the key ring can find the key again during verification.
      */
-    public JwtTokenProvider(final String secret) {
+    public JwtTokenProvider(final String keyId, final String secret) {
         try {
+            this.keyId = keyId;
             algorithm = Algorithm.HMAC512(secret);
+            verifier = JWT.require(algorithm).withIssuer(TOKEN_ISSUER).build();
         } catch (IllegalArgumentException e) {
             throw new UnexpectedException(GenericErrorCode.GEN_001);
         }
     }
 
+    public String getKeyId() {
+        return keyId;
+    }
 
     /**
      * This method receives uuid of the user, current time and expiry time of the access token.
@@ -41,14 +54,50 @@ public class JwtTokenProvider {
      * @return - generated JWT token
      */
     public String generateToken(final String userUuid, final ZonedDateTime issuedDateTime, final ZonedDateTime expiresDateTime) {
+        return generateToken(userUuid, null, issuedDateTime, expiresDateTime);
+    }
+
+    /**
+     * @param userUuid        - uuid of the user
+     * @param userId          - database id of the user, stored in the uid claim when present
+     * @param issuedDateTime  - current time
+     * @param expiresDateTime - expiry time of the JWT token
+     * @return - generated JWT token
+     */
+    public String generateToken(final String userUuid, final Integer userId, final ZonedDateTime issuedDateTime, final ZonedDateTime expiresDateTime) {
 
-        final Date issuedAt = new Date(issuedDateTime.getLong(ChronoField.INSTANT_SECONDS));
-        final Date expiresAt = new Date(expiresDateTime.getLong(ChronoField.INSTANT_SECONDS));
+        final Date issuedAt = Date.from(issuedDateTime.toInstant());
+        final Date expiresAt = Date.from(expiresDateTime.toInstant());
 
-        return JWT.create().withIssuer(TOKEN_ISSUER) //
-                .withKeyId(UUID.randomUUID().toString())
+        final JWTCreator.Builder builder = JWT.create().withIssuer(TOKEN_ISSUER) //
+                .withKeyId(keyId)
+                .withJWTId(nextTokenId())
                 .withAudience(userUuid) //
-                .withIssuedAt(issuedAt).withExpiresAt(expiresAt).sign(algorithm);
+                .withIssuedAt(issuedAt).withExpiresAt(expiresAt);
+        if (userId != null) {
+            builder.withClaim(USER_ID_CLAIM, userId);
+        }
+        return builder.sign(algorithm);
+    }
+
+    /**
+     * This method checks the signature, issuer and expiry of the JWT token locally, without any database access.
+     *
+     * @param token - JWT token
+     * @return - decoded JWT token whose audience is the uuid of the user
+     * @throws JWTVerificationException - if the token is malformed, tampered with, issued by someone else or expired
+     */
+    public DecodedJWT verifyToken(final String token) throws JWTVerificationException {
+        return verifier.verify(token);
+    }
+
+    /**
+     * The token id only keeps two tokens issued to the same user in the same second apart, it is not a secret.
+     * ThreadLocalRandom does not contend on a shared seed the way UUID.randomUUID() does on its SecureRandom.
+     */
+    private static String nextTokenId() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        return Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong());
     }
 
 }
@@ -0,0 +1,246 @@
+package com.upgrad.quora.service.business;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory token buckets which throttle sign in attempts per username and per client address.
+ * <p>
+ * Every attempt takes a token from the bucket of the username and from the bucket of the client address,
+ * which are refilled at a fixed rate up to their capacity. Both buckets are checked before either is taken from,
+ * so an attempt rejected for one key does not use up the tokens of the other. A bucket is a single AtomicLong updated by compare-and-set,
+ * so no lock is taken on the sign in path. Buckets are spread over stripes of bounded size; a full stripe forgets
+ * the buckets which have refilled completely, since they are equivalent to new ones, but never one which is still refilling,
+ * as that would reset the limit of its key. When no bucket can be forgotten, the new keys of the stripe share an overflow bucket.
+ */
+@Component
+@ManagedResource(objectName = "com.upgrad.quora:type=LoginRateLimiter")
+public class LoginRateLimiter {
+
+    private static final int STRIPES = 16;
+
+    private final boolean enabled;
+
+    private final BucketSet usernameBuckets;
+
+    private final BucketSet addressBuckets;
+
+    private final LongAdder rejections = new LongAdder();
+
+    public LoginRateLimiter(@Value("${quora.auth.login-throttle.enabled:true}") final boolean enabled,
+                            @Value("${quora.auth.login-throttle.username-capacity:10}") final int usernameCapacity,
+                            @Value("${quora.auth.login-throttle.username-refill-per-minute:5}") final int usernameRefillPerMinute,
+                            @Value("${quora.auth.login-throttle.address-capacity:50}") final int addressCapacity,
+                            @Value("${quora.auth.login-throttle.address-refill-per-minute:30}") final int addressRefillPerMinute,
+                            @Value("${quora.auth.login-throttle.max-keys:100000}") final int maxKeys) {
+        this.enabled = enabled;
+        this.usernameBuckets = new BucketSet(usernameCapacity, usernameRefillPerMinute, maxKeys);
+        this.addressBuckets = new BucketSet(addressCapacity, addressRefillPerMinute, maxKeys);
+    }
+
+    /**
+     * This method takes a token for the sign in attempt from the buckets of the username and of the client address,
+     * only if both of them have one.
+     *
+     * @param username      username sent by the client
+     * @param clientAddress address of the client, may be null when unknown
+     * @return 0 if the attempt may proceed, otherwise the number of milliseconds after which it may be retried
+     */
+    public long tryAcquire(final String username, final String clientAddress) {
+        if (!enabled) {
+            return 0;
+        }
+        final long now = System.currentTimeMillis();
+        final AtomicLong addressBucket = clientAddress == null ? null : addressBuckets.bucket(clientAddress, now);
+        final AtomicLong usernameBucket = usernameBuckets.bucket(username, now);
+        long retryAfterMillis = Math.max(addressBucket == null ? 0 : addressBuckets.retryAfter(addressBucket, now),
+                usernameBuckets.retryAfter(usernameBucket, now));
+        if (retryAfterMillis == 0 && addressBucket != null) {
+            retryAfterMillis = addressBuckets.tryAcquire(addressBucket, now);
+        }
+        if (retryAfterMillis == 0) {
+            retryAfterMillis = usernameBuckets.tryAcquire(usernameBucket, now);
+            // a concurrent attempt took the last token of the username in between, the token of the address goes back
+            if (retryAfterMillis > 0 && addressBucket != null) {
+                addressBuckets.release(addressBucket);
+            }
+        }
+        if (retryAfterMillis > 0) {
+            rejections.increment();
+        }
+        return retryAfterMillis;
+    }
+
+    @ManagedAttribute
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    @ManagedAttribute
+    public int getUsernameBucketCount() {
+        return usernameBuckets.size();
+    }
+
+    @ManagedAttribute
+    public int getAddressBucketCount() {
+        return addressBuckets.size();
+    }
+
+    /**
+     * Buckets of one kind of key. The state of a bucket packs the time of its last refill in the upper bits
+     * and its whole tokens in the lower TOKEN_BITS bits.
+     */
+    private static final class BucketSet {
+
+        private static final int TOKEN_BITS = 24;
+        private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+        private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+        private final long capacity;
+        private final long refillPerMinute;
+        private final long millisPerToken;
+        private final int maxKeysPerStripe;
+        private final long epoch = System.currentTimeMillis();
+
+        private final Stripe[] stripes = new Stripe[STRIPES];
+
+        private BucketSet(final int capacity, final int refillPerMinute, final int maxKeys) {
+            if (capacity <= 0 || capacity > TOKEN_MASK || refillPerMinute <= 0) {
+                throw new IllegalArgumentException("Login throttle capacity must be between 1 and " + TOKEN_MASK + " and its refill rate positive");
+            }
+            this.capacity = capacity;
+            this.refillPerMinute = refillPerMinute;
+            this.millisPerToken = (60000 + refillPerMinute - 1) / refillPerMinute;
+            this.maxKeysPerStripe = Math.max(1, maxKeys / STRIPES);
+            for (int i = 0; i < STRIPES; i++) {
+                stripes[i] = new Stripe(capacity);
+            }
+        }
+
+        /**
+         * @return the bucket of the key, created full if the key has none, or the overflow bucket of its stripe
+         * if the stripe is full of buckets which are still refilling
+         */
+        private AtomicLong bucket(final String key, final long nowMillis) {
+            final long now = nowMillis - epoch;
+            final Stripe stripe = stripes[(key.hashCode() & Integer.MAX_VALUE) % STRIPES];
+            final AtomicLong bucket = stripe.buckets.get(key);
+            if (bucket != null) {
+                return bucket;
+            }
+            if (stripe.buckets.size() >= maxKeysPerStripe) {
+                evict(stripe, now);
+                if (stripe.buckets.size() >= maxKeysPerStripe) {
+                    return stripe.overflow;
+                }
+            }
+            final AtomicLong created = new AtomicLong(now << TOKEN_BITS | capacity);
+            final AtomicLong existing = stripe.buckets.putIfAbsent(key, created);
+            return existing == null ? created : existing;
+        }
+
+        /**
+         * @return 0 if the bucket holds a token, otherwise the milliseconds until it does; nothing is taken
+         */
+        private long retryAfter(final AtomicLong bucket, final long nowMillis) {
+            final long now = nowMillis - epoch;
+            return retryAfter(refill(bucket.get(), now), now);
+        }
+
+        private long tryAcquire(final AtomicLong bucket, final long nowMillis) {
+            final long now = nowMillis - epoch;
+            while (true) {
+                final long state = bucket.get();
+                final long refilled = refill(state, now);
+                if ((refilled & TOKEN_MASK) == 0) {
+                    return retryAfter(refilled, now);
+                }
+                if (bucket.compareAndSet(state, refilled - 1)) {
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * This method gives back a token taken by tryAcquire.
+         */
+        private void release(final AtomicLong bucket) {
+            while (true) {
+                final long state = bucket.get();
+                if ((state & TOKEN_MASK) >= capacity || bucket.compareAndSet(state, state + 1)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return the state with the whole tokens earned since the last refill added. The time of the last refill
+         * only moves forward by the time those tokens took, so the part of the next token earned meanwhile is kept.
+         */
+        private long refill(final long state, final long now) {
+            final long refilledAt = state >>> TOKEN_BITS;
+            final long tokens = state & TOKEN_MASK;
+            if (tokens >= capacity) {
+                // a full bucket earns nothing, its next token is earned from the time the bucket is taken from
+                return now << TOKEN_BITS | tokens;
+            }
+            final long earned = (now - refilledAt) * refillPerMinute / 60000;
+            if (earned <= 0) {
+                return state;
+            }
+            if (tokens + earned >= capacity) {
+                return now << TOKEN_BITS | capacity;
+            }
+            return (refilledAt + earned * 60000 / refillPerMinute) << TOKEN_BITS | (tokens + earned);
+        }
+
+        private long retryAfter(final long refilled, final long now) {
+            if ((refilled & TOKEN_MASK) > 0) {
+                return 0;
+            }
+            return Math.max(1, (refilled >>> TOKEN_BITS) + millisPerToken - now);
+        }
+
+        private void evict(final Stripe stripe, final long now) {
+            // a single thread sweeps a stripe at a time, and at most once per interval, so a stripe full of refilling buckets
+            // is not swept again on every new key
+            if (now < stripe.nextSweep || !stripe.evicting.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                stripe.buckets.values().removeIf(bucket -> (refill(bucket.get(), now) & TOKEN_MASK) >= capacity);
+                stripe.nextSweep = now + SWEEP_INTERVAL_MILLIS;
+            } finally {
+                stripe.evicting.set(false);
+            }
+        }
+
+        private int size() {
+            int size = 0;
+            for (final Stripe stripe : stripes) {
+                size += stripe.buckets.size();
+            }
+            return size;
+        }
+    }
+
+    private static final class Stripe {
+        private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        // shared by the new keys while the stripe is full of buckets which are still refilling
+        private final AtomicLong overflow;
+        private final AtomicBoolean evicting = new AtomicBoolean();
+        private volatile long nextSweep;
+
+        private Stripe(final long capacity) {
+            this.overflow = new AtomicLong(capacity);
+        }
+    }
+}
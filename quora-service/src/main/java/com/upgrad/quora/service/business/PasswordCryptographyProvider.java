@@ -1,81 +1,231 @@
 package com.upgrad.quora.service.business;
 
 
-import java.security.NoSuchAlgorithmException;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
-import java.security.spec.InvalidKeySpecException;
 import java.util.Base64;
-import java.util.Random;
-import javax.crypto.SecretKey;
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.PBEKeySpec;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
 
+import com.upgrad.quora.service.exception.ServiceBusyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 
+/**
+ * This class hashes and verifies user passwords.
+ * <p>
+ * Hashes are stored in the versioned format <code>$algorithm$iterations$hex</code>, so the algorithm and its cost can change
+ * without invalidating existing passwords. Hashes without the format are the legacy PBKDF2WithHmacSHA512 hashes with 1000 iterations.
+ * Unless the number of iterations is configured, it is calibrated at startup so that one hash takes about the target latency on the current hardware.
+ * The calibration differs from node to node, so it only applies to new hashes: a stored hash is replaced when it falls below
+ * the configured minimum number of iterations, which is the same on every node, not when it differs from the calibrated one.
+ */
 @Component
 public class PasswordCryptographyProvider {
 
-    private static String SECRET_KEY_ALGORITHM = "PBKDF2WithHmacSHA512";
-    private static int HASHING_ITERATIONS = 1000;
-    private static int HASHING_KEY_LENGTH = 64;
+    private static final Logger LOGGER = LoggerFactory.getLogger(PasswordCryptographyProvider.class);
+
+    private static final String FORMAT_SEPARATOR = "$";
+    private static final int LEGACY_HASHING_ITERATIONS = 1000;
+    private static final int LEGACY_HASHING_KEY_LENGTH = 64;
+    private static final int CALIBRATION_ITERATIONS = 10000;
+    private static final int CALIBRATION_ROUNDS = 5;
+    private static final int MAX_HASHING_ITERATIONS = 10000000;
     private final static char[] hexArray = "0123456789ABCDEF".toCharArray();
 
+    /**
+     * SecureRandom is thread safe, so a single seeded instance generates all salts.
+     */
+    private static final SecureRandom SALT_RANDOM = new SecureRandom();
+
+    @Autowired
+    @Qualifier("passwordHashingExecutor")
+    private Executor passwordHashingExecutor;
+
+    private final PasswordHashAlgorithm algorithm;
+
+    private final int configuredIterations;
+
+    private final int minIterations;
+
+    private final long targetNanos;
+
+    private volatile int iterations;
+
+    public PasswordCryptographyProvider(@Value("${quora.password-hashing.algorithm:pbkdf2-sha512}") final String algorithm,
+                                        @Value("${quora.password-hashing.iterations:0}") final int configuredIterations,
+                                        @Value("${quora.password-hashing.min-iterations:10000}") final int minIterations,
+                                        @Value("${quora.password-hashing.target-millis:50}") final long targetMillis) {
+        this.algorithm = PasswordHashAlgorithm.fromId(algorithm);
+        this.configuredIterations = configuredIterations;
+        this.minIterations = minIterations;
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+    }
+
+    /**
+     * This method picks the number of iterations of new hashes: the configured one, or the one which makes a single hash take
+     * the target latency, but never fewer than the minimum.
+     */
+    @PostConstruct
+    public void calibrate() {
+        if (configuredIterations > 0) {
+            iterations = Math.max(minIterations, configuredIterations);
+            return;
+        }
+        final char[] password = "calibration".toCharArray();
+        final byte[] salt = generateSaltBytes();
+        long fastest = Long.MAX_VALUE;
+        for (int round = 0; round <= CALIBRATION_ROUNDS; round++) {
+            final long start = System.nanoTime();
+            algorithm.hash(password, salt, CALIBRATION_ITERATIONS);
+            final long elapsed = System.nanoTime() - start;
+            // the first round only warms up the JIT compiler
+            if (round > 0) {
+                fastest = Math.min(fastest, elapsed);
+            }
+        }
+        final long calibrated = targetNanos * CALIBRATION_ITERATIONS / Math.max(1L, fastest);
+        iterations = (int) Math.max(minIterations, Math.min(MAX_HASHING_ITERATIONS, calibrated / 1000 * 1000));
+        LOGGER.info("Password hashing calibrated to {} iterations of {} for a target of {} ms", iterations, algorithm.getId(), TimeUnit.NANOSECONDS.toMillis(targetNanos));
+    }
+
     /**
      * This method generates Salt and hashed Password
      *
      * @param password char array.
-     * @return String array with [0] encoded salt [1] hashed password.
+     * @return String array with [0] encoded salt [1] hashed password in the versioned format.
      */
     public String[] encrypt(final String password) {
         byte[] salt = generateSaltBytes();
-        byte[] hashedPassword = hashPassword(password.toCharArray(), salt);
-        return new String[]{getBase64EncodedBytesAsString(salt), bytesToHex(hashedPassword)};
+        final int currentIterations = iterations;
+        byte[] hashedPassword = algorithm.hash(password.toCharArray(), salt, currentIterations);
+        final String encodedHash = FORMAT_SEPARATOR + algorithm.getId() + FORMAT_SEPARATOR + currentIterations + FORMAT_SEPARATOR + bytesToHex(hashedPassword);
+        return new String[]{getBase64EncodedBytesAsString(salt), encodedHash};
     }
 
     /**
-     * This method re-generates hashed Password from raw-password and salt.
+     * This method re-generates hashed Password from raw-password and salt with the parameters recorded in the stored hash
+     * and compares it with the stored hash in constant time.
      * This will be used during authentication.
      *
-     * @param password char array.
-     * @param salt     byte array.
-     * @return byte array of hashed password.
+     * @param password   raw password.
+     * @param salt       encoded salt.
+     * @param storedHash hashed password as stored for the user.
+     * @return true if the password matches, false if it does not or if the salt or the stored hash is malformed.
      */
-    public static String encrypt(final String password, String salt) {
-        return bytesToHex(hashPassword(password.toCharArray(), getBase64DecodedStringAsBytes(salt)));
+    public boolean matches(final String password, final String salt, final String storedHash) {
+        if (salt == null || storedHash == null) {
+            return false;
+        }
+        try {
+            final byte[] saltBytes = getBase64DecodedStringAsBytes(salt);
+            final String expectedHex;
+            final byte[] actual;
+            if (!storedHash.startsWith(FORMAT_SEPARATOR)) {
+                expectedHex = storedHash;
+                actual = PasswordHashAlgorithm.PBKDF2_SHA512.hash(password.toCharArray(), saltBytes, LEGACY_HASHING_ITERATIONS, LEGACY_HASHING_KEY_LENGTH);
+            } else {
+                final String[] parts = storedHash.split("\\$");
+                if (parts.length != 4) {
+                    return false;
+                }
+                expectedHex = parts[3];
+                final int storedIterations = Integer.parseInt(parts[2]);
+                if (storedIterations <= 0 || storedIterations > MAX_HASHING_ITERATIONS) {
+                    return false;
+                }
+                actual = PasswordHashAlgorithm.fromId(parts[1]).hash(password.toCharArray(), saltBytes, storedIterations);
+            }
+            return MessageDigest.isEqual(bytesToHex(actual).getBytes(), expectedHex.getBytes());
+        } catch (IllegalArgumentException e) {
+            // an undecodable salt, a non numeric number of iterations or an unknown algorithm never matches
+            LOGGER.warn("Stored password hash or salt is malformed: {}", e.getMessage());
+            return false;
+        }
     }
 
     /**
-     * This method generates Salt
+     * This method tells whether the stored hash was produced with another algorithm or fewer iterations than the configured minimum,
+     * in which case it should be replaced the next time the raw password is known.
      *
-     * @return 32 bytes long array
+     * @param storedHash hashed password as stored for the user.
+     * @return true if the password should be hashed again.
      */
-    private static byte[] generateSaltBytes() {
-        final Random random = new SecureRandom();
-        byte[] saltBytes = new byte[32];
-        random.nextBytes(saltBytes);
-        return saltBytes;
+    public boolean needsRehash(final String storedHash) {
+        if (!storedHash.startsWith(FORMAT_SEPARATOR)) {
+            return true;
+        }
+        final String[] parts = storedHash.split("\\$");
+        if (parts.length != 4 || !algorithm.getId().equals(parts[1])) {
+            return true;
+        }
+        try {
+            return Integer.parseInt(parts[2]) < minIterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
     }
 
     /**
-     * This method generates hashed Password
+     * This method generates Salt and hashed Password on the password hashing worker pool.
      *
      * @param password char array.
-     * @param salt     byte array.
-     * @return byte array of hashed password.
+     * @return future of the String array with [0] encoded salt [1] hashed password,
+     * failed with ServiceBusyException when the worker pool is saturated.
+     */
+    public CompletableFuture<String[]> encryptAsync(final String password) {
+        try {
+            return CompletableFuture.supplyAsync(() -> encrypt(password), passwordHashingExecutor);
+        } catch (RejectedExecutionException e) {
+            return busy();
+        }
+    }
+
+    /**
+     * This method verifies the password on the password hashing worker pool.
+     *
+     * @param password   raw password.
+     * @param salt       encoded salt.
+     * @param storedHash hashed password as stored for the user.
+     * @return future telling whether the password matches, failed with ServiceBusyException when the worker pool is saturated.
      */
-    private static byte[] hashPassword(final char[] password, final byte[] salt) {
+    public CompletableFuture<Boolean> matchesAsync(final String password, final String salt, final String storedHash) {
         try {
-            SecretKeyFactory skf = SecretKeyFactory.getInstance(SECRET_KEY_ALGORITHM);
-            PBEKeySpec spec = new PBEKeySpec(password, salt, HASHING_ITERATIONS, HASHING_KEY_LENGTH);
-            SecretKey key = skf.generateSecret(spec);
-            byte[] res = key.getEncoded();
-            return res;
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
-            throw new RuntimeException(e);
+            return CompletableFuture.supplyAsync(() -> matches(password, salt, storedHash), passwordHashingExecutor);
+        } catch (RejectedExecutionException e) {
+            return busy();
         }
     }
 
+    public int getIterations() {
+        return iterations;
+    }
+
+    private static <T> CompletableFuture<T> busy() {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(new ServiceBusyException("SRV-001", "Too many requests are being processed, please try again later"));
+        return future;
+    }
+
+    /**
+     * This method generates Salt
+     *
+     * @return 32 bytes long array
+     */
+    private static byte[] generateSaltBytes() {
+        byte[] saltBytes = new byte[32];
+        SALT_RANDOM.nextBytes(saltBytes);
+        return saltBytes;
+    }
+
     private static String bytesToHex(byte[] bytes) {
         char[] hexChars = new char[bytes.length * 2];
         for (int j = 0; j < bytes.length; j++) {
@@ -94,5 +244,3 @@ public class PasswordCryptographyProvider {
         return Base64.getDecoder().decode(decode);
     }
 }
-
-
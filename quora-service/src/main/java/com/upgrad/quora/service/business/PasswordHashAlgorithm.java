@@ -0,0 +1,75 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.common.UnexpectedException;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+
+/**
+ * Password hashing algorithms supported by PasswordCryptographyProvider.
+ * The id of the algorithm is recorded in every stored hash, so the configured algorithm can be changed without invalidating existing passwords.
+ */
+public enum PasswordHashAlgorithm {
+
+    PBKDF2_SHA512("pbkdf2-sha512", "PBKDF2WithHmacSHA512", 512),
+
+    PBKDF2_SHA256("pbkdf2-sha256", "PBKDF2WithHmacSHA256", 256);
+
+    private final String id;
+
+    private final int keyLength;
+
+    /**
+     * SecretKeyFactory instances are not thread safe, so each hashing thread keeps one per algorithm instead of looking it up on every call.
+     */
+    private final ThreadLocal<SecretKeyFactory> secretKeyFactory;
+
+    PasswordHashAlgorithm(final String id, final String secretKeyAlgorithm, final int keyLength) {
+        this.id = id;
+        this.keyLength = keyLength;
+        this.secretKeyFactory = ThreadLocal.withInitial(() -> {
+            try {
+                return SecretKeyFactory.getInstance(secretKeyAlgorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+            }
+        });
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @param password   - raw password
+     * @param salt       - salt bytes
+     * @param iterations - work factor
+     * @return - hash of the password
+     */
+    public byte[] hash(final char[] password, final byte[] salt, final int iterations) {
+        return hash(password, salt, iterations, keyLength);
+    }
+
+    byte[] hash(final char[] password, final byte[] salt, final int iterations, final int keyLength) {
+        final PBEKeySpec spec = new PBEKeySpec(password, salt, iterations, keyLength);
+        try {
+            return secretKeyFactory.get().generateSecret(spec).getEncoded();
+        } catch (InvalidKeySpecException e) {
+            throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    public static PasswordHashAlgorithm fromId(final String id) {
+        for (final PasswordHashAlgorithm algorithm : values()) {
+            if (algorithm.id.equalsIgnoreCase(id)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported password hash algorithm: " + id);
+    }
+}
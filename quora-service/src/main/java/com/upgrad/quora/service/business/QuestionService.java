@@ -1,99 +1,206 @@
 package com.upgrad.quora.service.business;
 
+import com.upgrad.quora.service.common.Page;
+import com.upgrad.quora.service.common.PageCursor;
+import com.upgrad.quora.service.common.PageLimits;
+import com.upgrad.quora.service.common.SearchCursor;
+import com.upgrad.quora.service.dao.CollectionVersionDao;
 import com.upgrad.quora.service.dao.QuestionDao;
 import com.upgrad.quora.service.dao.UserDao;
+import com.upgrad.quora.service.dto.BulkCreateResult;
+import com.upgrad.quora.service.dto.QuestionSearchHit;
+import com.upgrad.quora.service.dto.QuestionSummary;
 import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
 import com.upgrad.quora.service.exception.AuthorizationFailedException;
+import com.upgrad.quora.service.exception.InvalidBulkRequestException;
+import com.upgrad.quora.service.exception.InvalidCursorException;
 import com.upgrad.quora.service.exception.InvalidQuestionException;
 import com.upgrad.quora.service.exception.UserNotFoundException;
+import com.upgrad.quora.service.search.QuestionSearchIndex;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service
 public class QuestionService {
 
+    // length of the content column of QuestionEntity
+    private static final int QUESTION_CONTENT_MAX_LENGTH = 200;
+
     @Autowired
     private QuestionDao questionDao;
     @Autowired
     private UserDao userDao;
+    @Autowired
+    private CollectionVersionDao collectionVersionDao;
+    @Autowired
+    private AuthenticationService authenticationService;
+    @Autowired
+    private PageLimits pageLimits;
+    @Autowired
+    private QuestionSearchIndex questionSearchIndex;
+    @Value("${quora.export.fetch-size:500}")
+    private int exportFetchSize;
+    @Value("${quora.bulk.max-items:1000}")
+    private int bulkMaxItems;
 
     @Transactional(propagation = Propagation.REQUIRED)
-    public QuestionEntity createQuestion(String accessToken, QuestionEntity questionEntity) throws AuthorizationFailedException {
-        UserAuthEntity userAuthEntity = userDao.getUserAuthToken(accessToken);
-        if(userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
-        }
-        if(userAuthEntity.getLoginAt().isBefore(userAuthEntity.getLogoutAt())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to post a question");
-        }
+    public QuestionEntity createQuestion(UserAuthEntity userAuthEntity, QuestionEntity questionEntity) throws AuthorizationFailedException {
+        authenticationService.authorize(userAuthEntity, "User is signed out.Sign in first to post a question");
         questionEntity.setUser(userDao.getUserById(String.valueOf(userAuthEntity.getUuid())));
+        collectionVersionDao.increment(CollectionVersionDao.QUESTIONS);
         return questionDao.createQuestion(questionEntity);
     }
 
+    /**
+     * Creates the questions in a single transaction, with the token checked once and the inserts sent in JDBC batches.
+     * Questions whose content is empty or too long are rejected and reported, the others are created.
+     *
+     * @param questionEntities new questions, with their uuid, content and date set
+     * @return the outcome of every question, in the order of the request
+     */
     @Transactional(propagation = Propagation.REQUIRED)
-    public List<QuestionEntity> getAllQuestions(String accessToken) throws AuthorizationFailedException {
-        UserAuthEntity userAuthEntity = userDao.getUserAuthToken(accessToken);
-        if(userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
+    public List<BulkCreateResult> createQuestions(UserAuthEntity userAuthEntity, List<QuestionEntity> questionEntities) throws AuthorizationFailedException, InvalidBulkRequestException {
+        authenticationService.authorize(userAuthEntity, "User is signed out.Sign in first to post a question");
+        if (questionEntities.isEmpty() || questionEntities.size() > bulkMaxItems) {
+            throw new InvalidBulkRequestException("BLK-001", "A bulk request must contain between 1 and " + bulkMaxItems + " items");
         }
-        if(userAuthEntity.getLogoutAt() != null && userAuthEntity.getLoginAt().isBefore(userAuthEntity.getLogoutAt())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to get all questions");
+        final UserEntity userEntity = userDao.getUserById(userAuthEntity.getUuid());
+        final List<BulkCreateResult> results = new ArrayList<>();
+        final List<QuestionEntity> validQuestions = new ArrayList<>();
+        for (int i = 0; i < questionEntities.size(); i++) {
+            final QuestionEntity questionEntity = questionEntities.get(i);
+            final String content = questionEntity.getContent();
+            if (content == null || content.trim().isEmpty()) {
+                results.add(BulkCreateResult.rejected(i, "QUES-002", "Question content is empty"));
+            } else if (content.length() > QUESTION_CONTENT_MAX_LENGTH) {
+                results.add(BulkCreateResult.rejected(i, "QUES-003", "Question content is longer than " + QUESTION_CONTENT_MAX_LENGTH + " characters"));
+            } else {
+                questionEntity.setUser(userEntity);
+                validQuestions.add(questionEntity);
+                results.add(BulkCreateResult.created(i, questionEntity.getUuid()));
+            }
         }
-        return questionDao.getAllQuestions();
+        if (!validQuestions.isEmpty()) {
+            collectionVersionDao.increment(CollectionVersionDao.QUESTIONS);
+            questionDao.createQuestions(validQuestions);
+        }
+        return results;
     }
 
-    public QuestionEntity editQuestion(String accessToken, String questionId, QuestionEntity questionEntity) throws AuthorizationFailedException, InvalidQuestionException {
-        UserAuthEntity userAuthEntity = userDao.getUserAuthToken(accessToken);
-        if(userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
-        }
-        if(userAuthEntity.getLogoutAt() != null && userAuthEntity.getLoginAt().isBefore(userAuthEntity.getLogoutAt())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to edit the question");
+    /**
+     * Returns the entity tag of the listing of all the questions, which changes whenever a question is created, edited or deleted.
+     * It costs a single counter lookup, so a client polling an unchanged listing is answered without reading the questions.
+     * The tag has to be read before the questions: a change committed in between then only makes the next poll read them again.
+     * The tag is weak, as it stands for the content whether the response is gzipped or not.
+     */
+    @Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+    public String getAllQuestionsETag(UserAuthEntity userAuthEntity) throws AuthorizationFailedException {
+        authenticationService.authorize(userAuthEntity, "User is signed out.Sign in first to get all questions");
+        return "W/\"questions-" + collectionVersionDao.getVersion(CollectionVersionDao.QUESTIONS) + "\"";
+    }
+
+    /**
+     * Returns one page of all the questions, newest first.
+     *
+     * @param cursor   opaque cursor returned with the previous page, null for the first page
+     * @param pageSize page size asked for by the client, null for the default one
+     */
+    @Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+    public Page<QuestionSummary> getAllQuestions(UserAuthEntity userAuthEntity, String cursor, Integer pageSize) throws AuthorizationFailedException, InvalidCursorException {
+        authenticationService.authorize(userAuthEntity, "User is signed out.Sign in first to get all questions");
+        final PageCursor after = PageCursor.decode(cursor);
+        final int limit = pageLimits.resolve(pageSize);
+        return Page.of(questionDao.getQuestions(after, limit + 1), limit, question -> new PageCursor(question.getDate(), question.getId()));
+    }
+
+    /**
+     * Returns one page of the questions matching the full-text search query, best ranked first.
+     * The in-memory search index answers once it is loaded, if it is enabled; the database answers otherwise.
+     * The next pages are searched by the engine which searched the first one, as the engines rank differently;
+     * a cursor of the in-memory index is rejected while the index is out of date.
+     *
+     * @param query    search query, in the web search syntax: words, "quoted phrases", or and -excluded words
+     * @param cursor   opaque cursor returned with the previous page, null for the first page
+     * @param pageSize page size asked for by the client, null for the default one
+     */
+    @Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+    public Page<QuestionSearchHit> searchQuestions(UserAuthEntity userAuthEntity, String query, String cursor, Integer pageSize) throws AuthorizationFailedException, InvalidCursorException {
+        authenticationService.authorize(userAuthEntity, "User is signed out.Sign in first to search questions");
+        final SearchCursor after = SearchCursor.decode(cursor);
+        final int limit = pageLimits.resolve(pageSize);
+        final SearchCursor.Engine engine = after != null ? after.getEngine()
+                : questionSearchIndex.isReady() ? SearchCursor.Engine.MEMORY : SearchCursor.Engine.DATABASE;
+        final List<QuestionSearchHit> hits;
+        if (engine == SearchCursor.Engine.DATABASE) {
+            hits = questionDao.searchQuestions(query, after, limit + 1);
+        } else if (questionSearchIndex.isReady()) {
+            hits = questionSearchIndex.search(query, after, limit + 1);
+        } else {
+            throw new InvalidCursorException("PAG-003", "Entered cursor belongs to search results which are no longer available, search again from the first page");
         }
-        QuestionEntity questionEntityFromDB = questionDao.getQuestionById(questionId);
+        return Page.of(hits, limit, hit -> new SearchCursor(engine, hit.getRank(), hit.getId()));
+    }
+
+    /**
+     * Checks that the user may export all the questions. The export itself runs later, while the response is being written.
+     */
+    public void authorizeExport(UserAuthEntity userAuthEntity) throws AuthorizationFailedException {
+        authenticationService.authorize(userAuthEntity, "User is signed out.Sign in first to get all questions");
+    }
+
+    /**
+     * Hands every question to the consumer without materializing the list, in a read-only transaction which keeps the database cursor open.
+     *
+     * @return number of questions exported
+     */
+    @Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+    public long exportQuestions(Consumer<QuestionEntity> consumer) {
+        return questionDao.forEachQuestion(exportFetchSize, consumer);
+    }
+
+    @Transactional(propagation = Propagation.REQUIRED)
+    public QuestionEntity editQuestion(UserAuthEntity userAuthEntity, String questionId, QuestionEntity questionEntity) throws AuthorizationFailedException, InvalidQuestionException {
+        authenticationService.authorize(userAuthEntity, "User is signed out.Sign in first to edit the question");
+        QuestionEntity questionEntityFromDB = questionDao.getQuestionById(questionId, QuestionEntity.WITH_USER);
         if(questionEntityFromDB == null) {
             throw new InvalidQuestionException("QUES-001", "Entered question uuid does not exist");
         }
         if(!(questionEntityFromDB.getUser().getUuid().equals(userAuthEntity.getUuid()))) {
             throw new AuthorizationFailedException("ATHR-003", "Only the question owner can edit the question");
         }
-        return questionDao.updateQuestion(questionEntity);
+        // the managed question is updated, so the change goes through the second-level cache
+        questionEntityFromDB.setContent(questionEntity.getContent());
+        // the answers are listed along with the content of their question
+        collectionVersionDao.increment(CollectionVersionDao.QUESTIONS, CollectionVersionDao.answersTo(questionEntityFromDB.getId()));
+        return questionDao.updateQuestion(questionEntityFromDB);
     }
 
     @Transactional(propagation = Propagation.REQUIRED)
-    public QuestionEntity deleteQuestion(String questionId, String accessToken) throws AuthorizationFailedException, InvalidQuestionException {
-        UserAuthEntity userAuthEntity = userDao.getUserAuthToken(accessToken);
-        if(userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
-        }
-        if(userAuthEntity.getLogoutAt() != null && userAuthEntity.getLoginAt().isBefore(userAuthEntity.getLogoutAt())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to delete a question");
-        }
-        QuestionEntity questionEntityFromDB = questionDao.getQuestionById(questionId);
+    public QuestionEntity deleteQuestion(String questionId, UserAuthEntity userAuthEntity) throws AuthorizationFailedException, InvalidQuestionException {
+        authenticationService.authorize(userAuthEntity, "User is signed out.Sign in first to delete a question");
+        QuestionEntity questionEntityFromDB = questionDao.getQuestionById(questionId, QuestionEntity.WITH_USER);
         if(questionEntityFromDB == null) {
             throw new InvalidQuestionException("QUES-001", "Entered question uuid does not exist");
         }
         if(!(questionEntityFromDB.getUser().getUuid().equals(userAuthEntity.getUuid())) && !(questionEntityFromDB.getUser().getRole().equalsIgnoreCase("ADMIN"))) {
             throw new AuthorizationFailedException("ATHR-003", "Only the question owner or admin can delete the question");
         }
+        collectionVersionDao.increment(CollectionVersionDao.QUESTIONS, CollectionVersionDao.answersTo(questionEntityFromDB.getId()));
         return questionDao.deleteQuestion(questionEntityFromDB);
     }
 
-    @Transactional(propagation = Propagation.REQUIRED)
-    public List<QuestionEntity> getAllQuestionsByUser(String accessToken, String userId) throws AuthorizationFailedException, UserNotFoundException {
-        UserAuthEntity userAuthEntity = userDao.getUserAuthToken(accessToken);
-        if(userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
-        }
-        if(userAuthEntity.getLogoutAt() != null && userAuthEntity.getLoginAt().isBefore(userAuthEntity.getLogoutAt())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out.Sign in first to get all questions posted by a specific user");
-        }
+    @Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+    public List<QuestionSummary> getAllQuestionsByUser(UserAuthEntity userAuthEntity, String userId) throws AuthorizationFailedException, UserNotFoundException {
+        authenticationService.authorize(userAuthEntity, "User is signed out.Sign in first to get all questions posted by a specific user");
         UserEntity userEntity = userDao.getUserById(userId);
         if(userEntity == null) {
             throw new UserNotFoundException("USR-001", "User with entered uuid whose question details are to be seen does not exist");
@@ -0,0 +1,177 @@
+package com.upgrad.quora.service.business;
+
+import com.upgrad.quora.service.dao.SessionMaintenanceDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntUnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Scheduled job which keeps the user_auth table from growing without bound.
+ * <p>
+ * Sessions which expired or were signed out longer than the retention period ago are deleted in small batches,
+ * each in a transaction of its own so that no lock is held for long. When user_auth is partitioned by expires_at,
+ * the job also creates the partitions of the coming months and drops the monthly partitions whose sessions have all ended.
+ * Signed out sessions are kept for the retention period so that their tokens keep being reported as signed out rather than unknown.
+ * The revocations of deleted users are deleted once every token issued to those users has expired.
+ */
+@Component
+@ManagedResource(objectName = "com.upgrad.quora:type=SessionReaper")
+public class SessionReaper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionReaper.class);
+
+    private static final Pattern MONTHLY_PARTITION = Pattern.compile("user_auth_p(\\d{6})");
+    private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
+    @Autowired
+    private SessionMaintenanceDao sessionMaintenanceDao;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+
+    private final int batchSize;
+
+    private final int maxBatches;
+
+    private final long retentionHours;
+
+    private final int partitionsAhead;
+
+    private final AtomicLong purgedTotal = new AtomicLong();
+
+    private volatile long lastRunPurged;
+
+    private volatile long lastRunMillis;
+
+    public SessionReaper(@Value("${quora.auth.session-reaper.enabled:true}") final boolean enabled,
+                         @Value("${quora.auth.session-reaper.batch-size:500}") final int batchSize,
+                         @Value("${quora.auth.session-reaper.max-batches:200}") final int maxBatches,
+                         @Value("${quora.auth.session-reaper.retention-hours:24}") final long retentionHours,
+                         @Value("${quora.auth.session-reaper.partitions-ahead:2}") final int partitionsAhead) {
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.retentionHours = retentionHours;
+        this.partitionsAhead = partitionsAhead;
+    }
+
+    @Scheduled(initialDelayString = "${quora.auth.session-reaper.interval-millis:60000}", fixedDelayString = "${quora.auth.session-reaper.interval-millis:60000}")
+    public void scheduledRun() {
+        if (enabled) {
+            try {
+                run();
+            } catch (DataAccessException e) {
+                LOGGER.warn("Purging ended sessions from user_auth failed", e);
+            }
+        }
+    }
+
+    /**
+     * This method purges the ended sessions once.
+     *
+     * @return number of sessions deleted row by row; sessions removed with a dropped partition are not counted
+     */
+    @ManagedOperation
+    public long run() {
+        final long start = System.nanoTime();
+        final LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+
+        int droppedPartitions = 0;
+        if (Boolean.TRUE.equals(transactionTemplate.execute(status -> sessionMaintenanceDao.isPartitioned()))) {
+            createUpcomingPartitions();
+            droppedPartitions = dropEndedPartitions(cutoff);
+        }
+
+        // each condition is deleted on its own, so that the signed out sessions are found through the partial index on logout_at
+        long purged = deleteInBatches(batchLimit -> sessionMaintenanceDao.deleteExpiredSessions(cutoff, batchLimit));
+        purged += deleteInBatches(batchLimit -> sessionMaintenanceDao.deleteSignedOutSessions(cutoff, batchLimit));
+
+        transactionTemplate.execute(status -> sessionMaintenanceDao.deleteEndedUserRevocations(LocalDateTime.now()));
+
+        final long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        purgedTotal.addAndGet(purged);
+        lastRunPurged = purged;
+        lastRunMillis = elapsedMillis;
+        LOGGER.info("Purged {} ended sessions and {} partitions from user_auth in {} ms", purged, droppedPartitions, elapsedMillis);
+        return purged;
+    }
+
+    @ManagedAttribute
+    public long getPurgedTotal() {
+        return purgedTotal.get();
+    }
+
+    @ManagedAttribute
+    public long getLastRunPurged() {
+        return lastRunPurged;
+    }
+
+    @ManagedAttribute
+    public long getLastRunMillis() {
+        return lastRunMillis;
+    }
+
+    private long deleteInBatches(final IntUnaryOperator deleteBatch) {
+        long deleted = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            final Integer batchDeleted = transactionTemplate.execute(status -> deleteBatch.applyAsInt(batchSize));
+            deleted += batchDeleted;
+            if (batchDeleted < batchSize) {
+                break;
+            }
+        }
+        return deleted;
+    }
+
+    private void createUpcomingPartitions() {
+        final LocalDate currentMonth = LocalDate.now().withDayOfMonth(1);
+        for (int month = 0; month <= partitionsAhead; month++) {
+            final LocalDate partitionMonth = currentMonth.plusMonths(month);
+            try {
+                transactionTemplate.execute(status -> sessionMaintenanceDao.createPartition(partitionMonth));
+            } catch (DataAccessException e) {
+                // happens when the default partition already holds sessions of that month
+                LOGGER.warn("Could not create the user_auth partition of {}", YearMonth.from(partitionMonth), e);
+            }
+        }
+    }
+
+    private int dropEndedPartitions(final LocalDateTime cutoff) {
+        int dropped = 0;
+        for (final String partitionName : transactionTemplate.execute(status -> sessionMaintenanceDao.getPartitionNames())) {
+            final Matcher matcher = MONTHLY_PARTITION.matcher(partitionName);
+            if (!matcher.matches()) {
+                continue;
+            }
+            final YearMonth month = YearMonth.parse(matcher.group(1), PARTITION_MONTH);
+            if (!month.plusMonths(1).atDay(1).atStartOfDay().isAfter(cutoff)) {
+                transactionTemplate.execute(status -> {
+                    sessionMaintenanceDao.dropPartition(partitionName);
+                    return null;
+                });
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+}
@@ -1,5 +1,6 @@
 package com.upgrad.quora.service.business;
 
+import com.upgrad.quora.service.dao.CollectionVersionDao;
 import com.upgrad.quora.service.dao.UserDao;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
@@ -8,9 +9,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service class which deals with business logic related to User entity
@@ -23,61 +28,99 @@ public class UserService {
     @Autowired
     private UserDao userDao;
 
+    @Autowired
+    private CollectionVersionDao collectionVersionDao;
+
     @Autowired
     private PasswordCryptographyProvider cryptographyProvider;
 
-    @Transactional(propagation = Propagation.REQUIRED)
-    public UserEntity createUser(UserEntity userEntity) throws SignUpRestrictedException {
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private LoginRateLimiter loginRateLimiter;
+
+    /**
+     * Registers the user. The duplicate checks run on the calling thread, the password is hashed on the
+     * password hashing worker pool and the user is then inserted in a transaction of its own.
+     *
+     * @return future of the created user, failed with SignUpRestrictedException or ServiceBusyException
+     */
+    public CompletableFuture<UserEntity> createUser(UserEntity userEntity) {
         UserEntity userByUserName = userDao.getUserByUserName(userEntity.getUserName());
         if(userByUserName != null) {
-            throw new SignUpRestrictedException("SGR-001", "Try any other Username, this Username has already been taken");
+            return failed(new SignUpRestrictedException("SGR-001", "Try any other Username, this Username has already been taken"));
         }
         UserEntity userByEmail = userDao.getUserByEmail(userEntity.getEmail());
         if(userByEmail != null && userByEmail.getEmail().equals(userEntity.getEmail())) {
-            throw new SignUpRestrictedException("SGR-002", "This user has already been registered, try with any other emailId");
+            return failed(new SignUpRestrictedException("SGR-002", "This user has already been registered, try with any other emailId"));
         }
         String password = userEntity.getPassword();
         if (password == null) {
             userEntity.setPassword("quora@123");
         }
-        String[] encryptedText = cryptographyProvider.encrypt(userEntity.getPassword());
-        userEntity.setSalt(encryptedText[0]);
-        userEntity.setPassword(encryptedText[1]);
-        return userDao.createUser(userEntity);
+        return cryptographyProvider.encryptAsync(userEntity.getPassword()).thenApply(encryptedText -> {
+            userEntity.setSalt(encryptedText[0]);
+            userEntity.setPassword(encryptedText[1]);
+            return transactionTemplate.execute(status -> userDao.createUser(userEntity));
+        });
     }
 
-    @Transactional(propagation = Propagation.REQUIRED)
-    public UserAuthEntity signIn(final String username, final String password) throws AuthenticationFailedException {
+    /**
+     * Signs the user in. The password is hashed on the password hashing worker pool, so the calling
+     * request thread is not held while PBKDF2 runs; the session is then stored in a transaction of its own.
+     * Attempts beyond the rate allowed for the username or the client address are rejected before the user is even looked up.
+     *
+     * @return future of the new session, failed with AuthenticationFailedException, SignInThrottledException or ServiceBusyException
+     */
+    public CompletableFuture<UserAuthEntity> signIn(final String username, final String password, final String clientAddress) {
+        final long retryAfterMillis = loginRateLimiter.tryAcquire(username, clientAddress);
+        if (retryAfterMillis > 0) {
+            return failed(new SignInThrottledException("ATH-003", "Too many sign in attempts, please try again later", TimeUnit.MILLISECONDS.toSeconds(retryAfterMillis + 999)));
+        }
+
         UserEntity userEntity = userDao.getUserByUserName(username);
         if (userEntity == null) {
-            throw new AuthenticationFailedException("ATH-001", "User with email not found");
+            return failed(new AuthenticationFailedException("ATH-001", "User with email not found"));
         }
 
-        final String encryptedPassword = cryptographyProvider.encrypt(password, userEntity.getSalt());
-        if (encryptedPassword.equals(userEntity.getPassword())) {
-            JwtTokenProvider jwtTokenProvider = new JwtTokenProvider(encryptedPassword);
+        return cryptographyProvider.matchesAsync(password, userEntity.getSalt(), userEntity.getPassword()).thenApply(matches -> {
+            if (!matches) {
+                throw new CompletionException(new AuthenticationFailedException("ATH-002", "Password Failed"));
+            }
+            // Hashes made with older parameters are replaced while the raw password is at hand; this still runs on the hashing pool
+            if (cryptographyProvider.needsRehash(userEntity.getPassword())) {
+                final String[] encryptedText = cryptographyProvider.encrypt(password);
+                userEntity.setSalt(encryptedText[0]);
+                userEntity.setPassword(encryptedText[1]);
+            }
             UserAuthEntity userAuthToken = new UserAuthEntity();
             userAuthToken.setUser(userEntity);
             final ZonedDateTime now = ZonedDateTime.now();
-            final ZonedDateTime expiresAt = now.plusHours(8);
-            userAuthToken.setAccessToken(jwtTokenProvider.generateToken(userEntity.getUuid(), now, expiresAt));
+            final ZonedDateTime expiresAt = now.plusHours(AuthenticationService.ACCESS_TOKEN_LIFETIME_HOURS);
+            userAuthToken.setAccessToken(authenticationService.issueToken(userEntity, now, expiresAt));
             userAuthToken.setLoginAt(LocalDateTime.now());
-            userAuthToken.setExpiresAt(LocalDateTime.now().plusHours(8));
-
-            userDao.createAuthToken(userAuthToken);
-            userDao.updateUser(userEntity);
-
-            return userAuthToken;
-        } else {
-            throw new AuthenticationFailedException("ATH-002", "Password Failed");
-        }
-
+            userAuthToken.setExpiresAt(LocalDateTime.now().plusHours(AuthenticationService.ACCESS_TOKEN_LIFETIME_HOURS));
+
+            return transactionTemplate.execute(status -> {
+                userDao.createAuthToken(userAuthToken);
+                userDao.updateUser(userEntity);
+                return userAuthToken;
+            });
+        });
     }
 
     @Transactional(propagation = Propagation.REQUIRED)
-    public UserAuthEntity signOut(final String accessToken) throws SignOutRestrictedException {
+    public UserAuthEntity signOut(final UserAuthEntity session) throws SignOutRestrictedException {
 
-        UserAuthEntity userAuthEntity = userDao.getUserAuthToken(accessToken);
+        if (session == null) {
+            throw new SignOutRestrictedException("SGR-001", "User is not Signed in");
+        }
+        // Sessions verified from a JWT are not backed by a loaded user_auth row, so the row to sign out is looked up by its token
+        UserAuthEntity userAuthEntity = session.getId() != null ? session : userDao.getUserAuthToken(session.getAccessToken());
       
         if (userAuthEntity == null) {
             throw new SignOutRestrictedException("SGR-001", "User is not Signed in");
@@ -86,27 +129,33 @@ public class UserService {
         final LocalDateTime now = LocalDateTime.now();
         userAuthEntity.setLogoutAt(now);
         userDao.updateAuthToken(userAuthEntity);
+        authenticationService.revoke(userAuthEntity);
         return userAuthEntity;
     }
 
-    public UserEntity deleteUser(String userUuid, String accessToken) throws AuthorizationFailedException, UserNotFoundException {
-        UserAuthEntity userAuthEntity = userDao.getUserAuthToken(accessToken);
-        if (userAuthEntity == null) {
-            throw new AuthorizationFailedException("ATHR-001", "User has not signed in");
-        }
+    @Transactional(propagation = Propagation.REQUIRED)
+    public UserEntity deleteUser(String userUuid, UserAuthEntity userAuthEntity) throws AuthorizationFailedException, UserNotFoundException {
+        authenticationService.checkSignedIn(userAuthEntity);
 
         UserEntity userEntity = userDao.getUserById(userUuid);
 
         if(userEntity == null) {
             throw new UserNotFoundException("USR-001", "User with entered uuid to be deleted does not exist");
         }
-        if(userAuthEntity.getLogoutAt() != null && userAuthEntity.getLoginAt().isBefore(userAuthEntity.getLogoutAt())) {
-            throw new AuthorizationFailedException("ATHR-002", "User is signed out");
-        }
+        authenticationService.checkNotSignedOut(userAuthEntity, "User is signed out");
         if(!(userEntity.getRole().equalsIgnoreCase("ADMIN"))) {
             throw new AuthorizationFailedException("ATHR-003", "Unauthorized Access, Entered user is not an admin");
         }
         userEntity = userDao.deleteUser(userEntity);
+        // the questions and answers of the user are deleted by cascade, whichever questions the answers were posted to
+        collectionVersionDao.increment(CollectionVersionDao.QUESTIONS, CollectionVersionDao.ANSWERS);
+        authenticationService.revokeUser(userEntity.getUuid());
         return userEntity;
     }
+
+    private static <T> CompletableFuture<T> failed(final Throwable throwable) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
 }
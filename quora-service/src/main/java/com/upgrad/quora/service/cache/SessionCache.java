@@ -0,0 +1,184 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.entity.UserAuthEntity;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, TTL based in-process cache of resolved user sessions keyed by the SHA-256 digest of their access token.
+ * Entries are detached snapshots of UserAuthEntity and never outlive the expiry time of the session they hold.
+ * Sessions are evicted oldest-first once the cache is full.
+ */
+@Component
+@ManagedResource(objectName = "com.upgrad.quora:type=SessionCache")
+public class SessionCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger insertionOrderLength = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SessionCache(@Value("${quora.auth.session-cache.max-size:10000}") final int maxSize,
+                        @Value("${quora.auth.session-cache.ttl-seconds:300}") final long ttlSeconds) {
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+    }
+
+    /**
+     * This method returns a copy of the cached session for the access token digest, or null when it is not cached or has expired.
+     *
+     * @param accessTokenDigest digest of the access token of the session
+     * @return snapshot of the session or null
+     */
+    public UserAuthEntity get(final String accessTokenDigest) {
+        final Entry entry = entries.get(accessTokenDigest);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (entry.deadline - System.nanoTime() <= 0) {
+            if (entries.remove(accessTokenDigest, entry)) {
+                evictions.increment();
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return copyOf(entry.session);
+    }
+
+    /**
+     * This method caches a snapshot of the session until either the configured TTL or the session expiry is reached, whichever comes first.
+     * Sessions which have already expired are not cached.
+     *
+     * @param accessTokenDigest digest of the access token of the session
+     * @param session           session resolved from the database
+     */
+    public void put(final String accessTokenDigest, final UserAuthEntity session) {
+        long lifetime = ttlNanos;
+        if (session.getExpiresAt() != null) {
+            final long untilExpiry = ChronoUnit.NANOS.between(LocalDateTime.now(), session.getExpiresAt());
+            lifetime = Math.min(lifetime, untilExpiry);
+        }
+        if (lifetime <= 0 || maxSize <= 0) {
+            return;
+        }
+        if (entries.put(accessTokenDigest, new Entry(copyOf(session), System.nanoTime() + lifetime)) == null) {
+            insertionOrder.offer(accessTokenDigest);
+            insertionOrderLength.incrementAndGet();
+        }
+        evictOverflow();
+    }
+
+    /**
+     * This method removes the session of the access token digest from the cache.
+     *
+     * @param accessTokenDigest digest of the access token of the session
+     */
+    public void invalidate(final String accessTokenDigest) {
+        entries.remove(accessTokenDigest);
+    }
+
+    /**
+     * This method removes every cached session that belongs to the user.
+     *
+     * @param userUuid uuid of the user
+     */
+    public void invalidateUser(final String userUuid) {
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            final UserAuthEntity session = iterator.next().session;
+            if (session.getUser() != null && userUuid.equals(session.getUser().getUuid())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    @ManagedOperation
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    @ManagedAttribute
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @ManagedAttribute
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @ManagedAttribute
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @ManagedAttribute
+    public int getSize() {
+        return entries.size();
+    }
+
+    private void evictOverflow() {
+        // Keys of invalidated sessions stay in the queue until polled, so the queue is trimmed along with the map.
+        int budget = insertionOrderLength.get();
+        while ((entries.size() > maxSize || insertionOrderLength.get() > 2 * maxSize) && budget-- > 0) {
+            final String eldest = insertionOrder.poll();
+            if (eldest == null) {
+                return;
+            }
+            insertionOrderLength.decrementAndGet();
+            if (entries.size() > maxSize) {
+                if (entries.remove(eldest) != null) {
+                    evictions.increment();
+                }
+            } else if (entries.containsKey(eldest)) {
+                insertionOrder.offer(eldest);
+                insertionOrderLength.incrementAndGet();
+            }
+        }
+    }
+
+    private static UserAuthEntity copyOf(final UserAuthEntity session) {
+        final UserAuthEntity copy = new UserAuthEntity();
+        copy.setId(session.getId());
+        copy.setUuid(session.getUuid());
+        copy.setUser(session.getUser());
+        copy.setAccessToken(session.getAccessToken());
+        copy.setAccessTokenDigest(session.getAccessTokenDigest());
+        copy.setLoginAt(session.getLoginAt());
+        copy.setExpiresAt(session.getExpiresAt());
+        copy.setLogoutAt(session.getLogoutAt());
+        return copy;
+    }
+
+    private static final class Entry {
+        private final UserAuthEntity session;
+        private final long deadline;
+
+        private Entry(final UserAuthEntity session, final long deadline) {
+            this.session = session;
+            this.deadline = deadline;
+        }
+    }
+}
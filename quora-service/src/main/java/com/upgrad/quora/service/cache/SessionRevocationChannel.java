@@ -0,0 +1,125 @@
+package com.upgrad.quora.service.cache;
+
+import com.upgrad.quora.service.business.AuthenticationService;
+import com.upgrad.quora.service.common.NotificationChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+/**
+ * Broadcasts session revocations to every node of the application over Postgres LISTEN/NOTIFY.
+ * <p>
+ * Every node applies the revocations to its session cache, and in jwt mode to its token deny-list. When it resyncs, the session cache
+ * is cleared; in jwt mode the deny-list is also reloaded from the signed out sessions in user_auth and from the deleted users in user_revocation.
+ * In database mode user_auth is looked up for every token the cache does not hold, so the deny-list is not used.
+ */
+@Component
+@ManagedResource(objectName = "com.upgrad.quora:type=SessionRevocationChannel")
+public class SessionRevocationChannel extends NotificationChannel {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionRevocationChannel.class);
+
+    static final String CHANNEL = "quora_session_revocation";
+
+    private static final String TOKEN_PREFIX = "t:";
+    private static final String USER_PREFIX = "u:";
+
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private TokenDenyList tokenDenyList;
+
+    private final boolean jwtMode;
+
+    public SessionRevocationChannel(@Value("${quora.auth.revocation-channel.enabled:true}") final boolean enabled,
+                                    @Value("${quora.auth.mode:" + AuthenticationService.DATABASE_MODE + "}") final String authMode) {
+        super(CHANNEL, "session-revocation", enabled);
+        this.jwtMode = AuthenticationService.JWT_MODE.equalsIgnoreCase(authMode);
+    }
+
+    @PostConstruct
+    @Override
+    public void start() {
+        super.start();
+    }
+
+    /**
+     * This method broadcasts that the session of the access token digest has been signed out.
+     *
+     * @param accessTokenDigest digest of the access token of the session
+     * @param expiresAtMillis   expiry time of the session in epoch milliseconds
+     */
+    public void publishSession(final String accessTokenDigest, final long expiresAtMillis) {
+        enqueue(TOKEN_PREFIX + accessTokenDigest + ':' + expiresAtMillis);
+    }
+
+    /**
+     * This method broadcasts that every session of the user has been revoked.
+     *
+     * @param userUuid    uuid of the user
+     * @param untilMillis time in epoch milliseconds until which tokens of the user have to be denied
+     */
+    public void publishUser(final String userUuid, final long untilMillis) {
+        enqueue(USER_PREFIX + userUuid + ':' + untilMillis);
+    }
+
+    @Override
+    protected void applyEvent(final String event) {
+        final int separator = event.lastIndexOf(':');
+        if (separator > 2 && event.startsWith(TOKEN_PREFIX)) {
+            final String accessTokenDigest = event.substring(TOKEN_PREFIX.length(), separator);
+            final long untilMillis = Long.parseLong(event.substring(separator + 1));
+            sessionCache.invalidate(accessTokenDigest);
+            if (jwtMode) {
+                tokenDenyList.revoke(accessTokenDigest, untilMillis);
+            }
+        } else if (separator > 2 && event.startsWith(USER_PREFIX)) {
+            final String userUuid = event.substring(USER_PREFIX.length(), separator);
+            final long untilMillis = Long.parseLong(event.substring(separator + 1));
+            sessionCache.invalidateUser(userUuid);
+            if (jwtMode) {
+                tokenDenyList.revokeUser(userUuid, untilMillis);
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown session revocation event");
+        }
+    }
+
+    @Override
+    protected void resync(final Connection connection) throws SQLException {
+        sessionCache.invalidateAll();
+        if (!jwtMode) {
+            LOGGER.info("Session revocations resynced, the session cache was cleared");
+            return;
+        }
+        int revoked = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT access_token_digest, expires_at FROM user_auth WHERE logout_at IS NOT NULL AND expires_at > now()")) {
+            while (resultSet.next()) {
+                final Timestamp expiresAt = resultSet.getTimestamp(2);
+                tokenDenyList.revoke(resultSet.getString(1), expiresAt.getTime());
+                revoked++;
+            }
+        }
+        int revokedUsers = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT CAST(user_uuid AS VARCHAR), revoked_until FROM user_revocation WHERE revoked_until > now()")) {
+            while (resultSet.next()) {
+                tokenDenyList.revokeUser(resultSet.getString(1), resultSet.getTimestamp(2).getTime());
+                revokedUsers++;
+            }
+        }
+        LOGGER.info("Session revocations resynced, {} signed out sessions and {} deleted users are denied", revoked, revokedUsers);
+    }
+}
@@ -0,0 +1,99 @@
+package com.upgrad.quora.service.cache;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory deny-list of access tokens revoked before their expiry, used when tokens are verified without the database.
+ * Tokens are remembered by the SHA-256 digest of the access token, and only until they expire, after which the signature check rejects them anyway.
+ * Deleted users are remembered the same way, until every token issued before their deletion has expired.
+ * Expired entries are dropped when they are looked up, and all at once when the number of entries has doubled since the last purge,
+ * so that a purge costs a constant amount per revocation.
+ */
+@Component
+@ManagedResource(objectName = "com.upgrad.quora:type=TokenDenyList")
+public class TokenDenyList {
+
+    private static final int MIN_PURGE_SIZE = 1024;
+
+    private final DeniedKeys revokedUntil = new DeniedKeys();
+
+    private final DeniedKeys revokedUsersUntil = new DeniedKeys();
+
+    /**
+     * This method denies the access token until the given expiry time.
+     *
+     * @param accessTokenDigest digest of the access token to deny
+     * @param expiresAtMillis   expiry time of the token in epoch milliseconds
+     */
+    public void revoke(final String accessTokenDigest, final long expiresAtMillis) {
+        revokedUntil.deny(accessTokenDigest, expiresAtMillis);
+    }
+
+    public boolean isRevoked(final String accessTokenDigest) {
+        return revokedUntil.isDenied(accessTokenDigest);
+    }
+
+    /**
+     * This method denies every token of the user until the given time.
+     *
+     * @param userUuid    uuid of the user
+     * @param untilMillis time in epoch milliseconds after which no token issued to the user is valid any more
+     */
+    public void revokeUser(final String userUuid, final long untilMillis) {
+        revokedUsersUntil.deny(userUuid, untilMillis);
+    }
+
+    public boolean isUserRevoked(final String userUuid) {
+        return revokedUsersUntil.isDenied(userUuid);
+    }
+
+    @ManagedAttribute
+    public int getSize() {
+        return revokedUntil.deniedUntil.size();
+    }
+
+    @ManagedAttribute
+    public int getUserCount() {
+        return revokedUsersUntil.deniedUntil.size();
+    }
+
+    private static final class DeniedKeys {
+
+        private final Map<String, Long> deniedUntil = new ConcurrentHashMap<>();
+
+        // size above which the expired entries are purged, twice the size left by the last purge
+        private final AtomicInteger purgeSize = new AtomicInteger(MIN_PURGE_SIZE);
+
+        private void deny(final String key, final long untilMillis) {
+            final long now = System.currentTimeMillis();
+            if (untilMillis <= now) {
+                return;
+            }
+            deniedUntil.merge(key, untilMillis, Math::max);
+            final int threshold = purgeSize.get();
+            // a single thread purges, the others see the raised threshold
+            if (deniedUntil.size() > threshold && purgeSize.compareAndSet(threshold, Integer.MAX_VALUE)) {
+                deniedUntil.values().removeIf(until -> until <= now);
+                purgeSize.set(Math.max(MIN_PURGE_SIZE, 2 * deniedUntil.size()));
+            }
+        }
+
+        private boolean isDenied(final String key) {
+            final Long untilMillis = deniedUntil.get(key);
+            if (untilMillis == null) {
+                return false;
+            }
+            if (untilMillis <= System.currentTimeMillis()) {
+                deniedUntil.remove(key, untilMillis);
+                return false;
+            }
+            return true;
+        }
+    }
+}
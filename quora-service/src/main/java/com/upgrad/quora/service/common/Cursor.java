@@ -0,0 +1,12 @@
+package com.upgrad.quora.service.common;
+
+/**
+ * Position in a keyset paginated listing, handed to clients in its opaque form.
+ */
+public interface Cursor {
+
+    /**
+     * @return - opaque representation of the cursor, which the client sends back to get the next page
+     */
+    String encode();
+}
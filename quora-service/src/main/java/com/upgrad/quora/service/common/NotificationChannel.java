@@ -0,0 +1,317 @@
+package com.upgrad.quora.service.common;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Broadcasts events to every node of the application over a Postgres LISTEN/NOTIFY channel.
+ * <p>
+ * Events are queued once the transaction which caused them has committed, and a publisher thread sends everything
+ * queued in as few pg_notify calls as the payload limit allows, so notifications are batched under load.
+ * A listener thread keeps a dedicated connection outside of the connection pool, blocks on it until notifications arrive
+ * and hands their events to applyEvent. Notifications sent while that connection was down are lost, so after every (re)connect,
+ * and whenever a node could not queue all of its events, the listener calls resync to reload the state from the database.
+ * Events which cannot be applied are logged and skipped, so that they never stop the listener.
+ */
+public abstract class NotificationChannel {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotificationChannel.class);
+
+    private static final String RESYNC = "*";
+    private static final char SEPARATOR = ' ';
+
+    /**
+     * Postgres rejects payloads of 8000 bytes or more.
+     */
+    private static final int MAX_PAYLOAD_LENGTH = 7900;
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final int RECEIVE_TIMEOUT_MILLIS = 1000;
+    private static final long RECONNECT_DELAY_MILLIS = 5000;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    private final String channel;
+
+    private final String name;
+
+    private final boolean enabled;
+
+    private final BlockingQueue<String> pending = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicBoolean overflowed = new AtomicBoolean();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder malformed = new LongAdder();
+
+    private volatile boolean running;
+    private volatile Connection listenerConnection;
+    private Thread publisher;
+    private Thread listener;
+
+    /**
+     * @param channel name of the Postgres channel, shared by all the nodes
+     * @param name    name of the channel in the logs and the thread names, such as "session-revocation"
+     * @param enabled false to neither publish nor listen
+     */
+    protected NotificationChannel(final String channel, final String name, final boolean enabled) {
+        this.channel = channel;
+        this.name = name;
+        this.enabled = enabled;
+    }
+
+    /**
+     * This method starts the publisher and the listener; the subclass decides when, once what its events act on is ready.
+     */
+    public void start() {
+        if (!enabled || running) {
+            return;
+        }
+        running = true;
+        publisher = new Thread(this::publish, name + "-publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+        listener = new Thread(this::listen, name + "-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (publisher != null) {
+            publisher.interrupt();
+        }
+        if (listener != null) {
+            listener.interrupt();
+        }
+        closeQuietly(listenerConnection);
+    }
+
+    @ManagedAttribute
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    @ManagedAttribute
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    @ManagedAttribute
+    public long getResyncCount() {
+        return resyncs.sum();
+    }
+
+    @ManagedAttribute
+    public long getMalformedCount() {
+        return malformed.sum();
+    }
+
+    @ManagedAttribute
+    public boolean isConnected() {
+        return listenerConnection != null;
+    }
+
+    /**
+     * This method broadcasts the event once the current transaction has committed, or right away outside of a transaction.
+     *
+     * @param event event without space, which every node hands to applyEvent
+     */
+    protected void enqueue(final String event) {
+        if (!running) {
+            return;
+        }
+        // Nothing is announced before the change is visible in the database, otherwise another node could reload the old state
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    offer(event);
+                }
+            });
+        } else {
+            offer(event);
+        }
+    }
+
+    /**
+     * This method applies an event received from any node, this one included.
+     *
+     * @throws RuntimeException if the event is malformed, which skips it
+     */
+    protected abstract void applyEvent(String event);
+
+    /**
+     * This method reloads from the database the state which the events keep current, as events may have been missed.
+     */
+    protected abstract void resync(Connection connection) throws SQLException;
+
+    /**
+     * This method is called when the listener lost its connection: events are missed until it reconnects and resyncs.
+     */
+    protected void disconnected() {
+    }
+
+    private void offer(final String event) {
+        if (!pending.offer(event)) {
+            // the events which did not fit are replaced by a request to resync, which covers all of them
+            overflowed.set(true);
+        }
+    }
+
+    private void publish() {
+        final List<String> events = new ArrayList<>();
+        while (running) {
+            try {
+                events.add(pending.take());
+                pending.drainTo(events);
+                if (overflowed.getAndSet(false)) {
+                    events.clear();
+                    events.add(RESYNC);
+                }
+                for (final String payload : toPayloads(events)) {
+                    jdbcTemplate.execute("SELECT pg_notify(?, ?)", (PreparedStatementCallback<Boolean>) statement -> {
+                        statement.setString(1, channel);
+                        statement.setString(2, payload);
+                        return statement.execute();
+                    });
+                    published.increment();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not publish {} {} events, the other nodes will catch up when they resync", events.size(), name, e);
+            } finally {
+                events.clear();
+            }
+        }
+    }
+
+    static List<String> toPayloads(final List<String> events) {
+        final List<String> payloads = new ArrayList<>();
+        final StringBuilder payload = new StringBuilder();
+        for (final String event : events) {
+            if (payload.length() > 0 && payload.length() + 1 + event.length() > MAX_PAYLOAD_LENGTH) {
+                payloads.add(payload.toString());
+                payload.setLength(0);
+            }
+            if (payload.length() > 0) {
+                payload.append(SEPARATOR);
+            }
+            payload.append(event);
+        }
+        if (payload.length() > 0) {
+            payloads.add(payload.toString());
+        }
+        return payloads;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword())) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                listenerConnection = connection;
+                resyncFrom(connection);
+
+                final PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    final PGNotification[] notifications = pgConnection.getNotifications(RECEIVE_TIMEOUT_MILLIS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (final PGNotification notification : notifications) {
+                        received.increment();
+                        if (apply(notification.getParameter())) {
+                            resyncFrom(connection);
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    LOGGER.warn("The {} listener lost its connection, reconnecting in {} ms", name, RECONNECT_DELAY_MILLIS, e);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error("The {} listener failed, reconnecting in {} ms", name, RECONNECT_DELAY_MILLIS, e);
+            } finally {
+                listenerConnection = null;
+            }
+            if (running) {
+                disconnected();
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(RECONNECT_DELAY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true if the payload asks for a resync
+     */
+    private boolean apply(final String payload) {
+        boolean resync = false;
+        for (final String event : payload.split(String.valueOf(SEPARATOR))) {
+            if (RESYNC.equals(event)) {
+                resync = true;
+                continue;
+            }
+            try {
+                applyEvent(event);
+            } catch (RuntimeException e) {
+                // a malformed event must not stop the listener from applying the others
+                malformed.increment();
+                LOGGER.warn("Skipping malformed {} event '{}'", name, event, e);
+            }
+        }
+        return resync;
+    }
+
+    private void resyncFrom(final Connection connection) throws SQLException {
+        resync(connection);
+        resyncs.increment();
+    }
+
+    private void closeQuietly(final Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.debug("Could not close the {} listener connection", name, e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.upgrad.quora.service.common;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset paginated listing.
+ *
+ * @param <T> type of the rows
+ */
+public final class Page<T> {
+
+    private final List<T> items;
+    private final Cursor nextCursor;
+
+    private Page(final List<T> items, final Cursor nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @param rows     - rows fetched with a limit of one more than the page size
+     * @param pageSize - number of rows of the page
+     * @param keyOf    - function which gives the cursor pointing right after a row
+     * @return - the page, with a next cursor only if the extra row was found
+     */
+    public static <T> Page<T> of(final List<T> rows, final int pageSize, final Function<T, ? extends Cursor> keyOf) {
+        if (rows.size() <= pageSize) {
+            return new Page<>(rows, null);
+        }
+        final List<T> items = rows.subList(0, pageSize);
+        return new Page<>(items, keyOf.apply(items.get(pageSize - 1)));
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * @return - cursor of the next page, or null if this is the last page
+     */
+    public Cursor getNextCursor() {
+        return nextCursor;
+    }
+}
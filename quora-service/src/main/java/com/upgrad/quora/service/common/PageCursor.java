@@ -0,0 +1,58 @@
+package com.upgrad.quora.service.common;
+
+import com.upgrad.quora.service.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a listing ordered by date and id, i.e. the key of the last row of a page.
+ * Clients receive it as an opaque URL safe string and send it back unchanged to get the next page;
+ * the next page then starts right after that key, so it is found through the index instead of by skipping rows.
+ */
+public final class PageCursor implements Cursor {
+
+    private static final char SEPARATOR = '|';
+
+    private final LocalDateTime date;
+    private final Integer id;
+
+    public PageCursor(final LocalDateTime date, final Integer id) {
+        this.date = date;
+        this.id = id;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    @Override
+    public String encode() {
+        final String key = date.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor - opaque representation of a cursor, as returned by encode
+     * @return - the cursor, or null when no cursor is given
+     * @throws InvalidCursorException - if the cursor was not produced by encode
+     */
+    public static PageCursor decode(final String cursor) throws InvalidCursorException {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            final String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            final int separator = key.lastIndexOf(SEPARATOR);
+            return new PageCursor(LocalDateTime.parse(key.substring(0, separator)), Integer.valueOf(key.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException("PAG-001", "Entered cursor is not valid");
+        }
+    }
+}
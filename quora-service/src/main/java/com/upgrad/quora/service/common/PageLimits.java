@@ -0,0 +1,31 @@
+package com.upgrad.quora.service.common;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Page sizes of the paginated listings: the one used when the client does not ask for any, and the largest one a client may ask for.
+ */
+@Component
+public class PageLimits {
+
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public PageLimits(@Value("${quora.pagination.default-page-size:20}") final int defaultPageSize,
+                      @Value("${quora.pagination.max-page-size:100}") final int maxPageSize) {
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * @param requested - page size asked for by the client, may be null
+     * @return - page size to use, between 1 and the maximum page size
+     */
+    public int resolve(final Integer requested) {
+        if (requested == null) {
+            return Math.min(defaultPageSize, maxPageSize);
+        }
+        return Math.max(1, Math.min(requested, maxPageSize));
+    }
+}
@@ -0,0 +1,88 @@
+package com.upgrad.quora.service.common;
+
+import com.upgrad.quora.service.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position in search results ordered by rank and id, i.e. the key of the last result of a page.
+ * Like the PageCursor, clients receive it as an opaque URL safe string and send it back unchanged to get the next page.
+ * The cursor records the engine which ranked the results, as the ranks of the two engines are not comparable.
+ */
+public final class SearchCursor implements Cursor {
+
+    /**
+     * Engine which ranked the search results.
+     */
+    public enum Engine {
+        DATABASE('d'), MEMORY('m');
+
+        private final char code;
+
+        Engine(final char code) {
+            this.code = code;
+        }
+
+        static Engine of(final char code) {
+            for (final Engine engine : values()) {
+                if (engine.code == code) {
+                    return engine;
+                }
+            }
+            throw new IllegalArgumentException("Unknown search engine " + code);
+        }
+    }
+
+    private static final char SEPARATOR = '|';
+
+    private final Engine engine;
+    private final float rank;
+    private final Integer id;
+
+    public SearchCursor(final Engine engine, final float rank, final Integer id) {
+        this.engine = engine;
+        this.rank = rank;
+        this.id = id;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public float getRank() {
+        return rank;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    @Override
+    public String encode() {
+        // Float.toString gives back exactly the same float once parsed as a float, by Java or by a cast to real in the database
+        final String key = String.valueOf(engine.code) + SEPARATOR + rank + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor - opaque representation of a cursor, as returned by encode
+     * @return - the cursor, or null when no cursor is given
+     * @throws InvalidCursorException - if the cursor was not produced by encode
+     */
+    public static SearchCursor decode(final String cursor) throws InvalidCursorException {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            final String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            final int separator = key.lastIndexOf(SEPARATOR);
+            if (key.length() < 2 || key.charAt(1) != SEPARATOR) {
+                throw new IllegalArgumentException("Search cursor without engine");
+            }
+            return new SearchCursor(Engine.of(key.charAt(0)), Float.parseFloat(key.substring(2, separator)), Integer.valueOf(key.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException("PAG-001", "Entered cursor is not valid");
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.upgrad.quora.service.common;
+
+/**
+ * Order of a listing sorted by date, ties being broken by id in the same direction.
+ */
+public enum SortOrder {
+
+    NEWEST("newest"),
+
+    OLDEST("oldest");
+
+    private final String parameter;
+
+    SortOrder(final String parameter) {
+        this.parameter = parameter;
+    }
+
+    public String getParameter() {
+        return parameter;
+    }
+
+    /**
+     * @param parameter - value of the sort request parameter, may be null
+     * @param defaultOrder - order used when no value is given
+     * @return - the sort order, or null if the value is not a known order
+     */
+    public static SortOrder fromParameter(final String parameter, final SortOrder defaultOrder) {
+        if (parameter == null || parameter.isEmpty()) {
+            return defaultOrder;
+        }
+        for (final SortOrder sortOrder : values()) {
+            if (sortOrder.parameter.equalsIgnoreCase(parameter)) {
+                return sortOrder;
+            }
+        }
+        return null;
+    }
+}
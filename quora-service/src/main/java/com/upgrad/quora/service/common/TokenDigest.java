@@ -0,0 +1,43 @@
+package com.upgrad.quora.service.common;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the fixed-width SHA-256 digest under which access tokens are indexed in the user_auth table.
+ * The digest is rendered as 64 lowercase hex characters, the same as encode(digest(token, 'sha256'), 'hex') in Postgres.
+ */
+public final class TokenDigest {
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+    private static final char[] HEX_ARRAY = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<MessageDigest> MESSAGE_DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+        }
+    });
+
+    private TokenDigest() {
+    }
+
+    /**
+     * @param accessToken - access token
+     * @return - SHA-256 digest of the token as 64 lowercase hex characters
+     */
+    public static String sha256Hex(final String accessToken) {
+        final MessageDigest messageDigest = MESSAGE_DIGEST.get();
+        messageDigest.reset();
+        final byte[] digest = messageDigest.digest(accessToken.getBytes(StandardCharsets.UTF_8));
+        final char[] hexChars = new char[digest.length * 2];
+        for (int j = 0; j < digest.length; j++) {
+            int v = digest[j] & 0xFF;
+            hexChars[j * 2] = HEX_ARRAY[v >>> 4];
+            hexChars[j * 2 + 1] = HEX_ARRAY[v & 0x0F];
+        }
+        return new String(hexChars);
+    }
+}
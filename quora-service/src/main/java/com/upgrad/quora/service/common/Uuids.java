@@ -0,0 +1,46 @@
+package com.upgrad.quora.service.common;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates the uuids of the users, questions and answers, and parses the ones received in requests.
+ * <p>
+ * The uuids are time ordered in the layout of version 7: the first 48 bits are the milliseconds since the epoch, followed by
+ * the version and variant bits and 74 random bits. Postgres compares uuid values byte by byte, so new rows land at the end of
+ * the uuid indexes instead of on a random page of them.
+ * The uuids identify resources in the urls of the API but grant nothing by themselves, so the random bits are drawn from
+ * ThreadLocalRandom, which does not contend on a shared seed the way UUID.randomUUID() does on its SecureRandom.
+ */
+public final class Uuids {
+
+    private static final int CANONICAL_LENGTH = 36;
+
+    private Uuids() {
+    }
+
+    /**
+     * @return - new time-ordered uuid
+     */
+    public static UUID timeOrdered() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final long mostSigBits = (System.currentTimeMillis() << 16) | 0x7000L | (random.nextInt() & 0x0FFFL);
+        final long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * @param value - uuid in its canonical text form, as returned by the API
+     * @return - the uuid, or null if the value is not a uuid, in which case no row can match it
+     */
+    public static UUID parse(final String value) {
+        if (value == null || value.length() != CANONICAL_LENGTH) {
+            return null;
+        }
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -1,27 +1,81 @@
 package com.upgrad.quora.service.dao;
 
+import com.upgrad.quora.service.common.PageCursor;
+import com.upgrad.quora.service.common.SortOrder;
+import com.upgrad.quora.service.common.Uuids;
+import com.upgrad.quora.service.dto.AnswerSummary;
 import com.upgrad.quora.service.entity.AnswerEntity;
+import com.upgrad.quora.service.entity.QuestionEntity;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
 import java.util.List;
+import java.util.UUID;
 
 @Repository
 public class AnswerDao {
 
+    private static final String FETCH_GRAPH_HINT = "javax.persistence.fetchgraph";
+
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
     public AnswerEntity createAnswer(AnswerEntity answerEntity) {
         entityManager.persist(answerEntity);
         return answerEntity;
     }
 
+    /**
+     * This method inserts the answers in JDBC batches. The persistence context is flushed and cleared after every batch,
+     * so the inserts of a batch are sent together and the created answers do not pile up in memory;
+     * entities loaded earlier in the transaction are detached by the clear.
+     *
+     * @param answerEntities new answers, with their user and question set
+     */
+    public void createAnswers(final List<AnswerEntity> answerEntities) {
+        for (int i = 0; i < answerEntities.size(); i++) {
+            entityManager.persist(answerEntities.get(i));
+            if ((i + 1) % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+    }
+
     public AnswerEntity getAnswerById(final String answerUuid) {
+        final UUID uuid = Uuids.parse(answerUuid);
+        if (uuid == null) {
+            return null;
+        }
+        try {
+            return entityManager.createNamedQuery("answerByUuid", AnswerEntity.class).setParameter("uuid", uuid).getSingleResult();
+        } catch (NoResultException nre) {
+            return null;
+        }
+    }
+
+    /**
+     * This method returns the answer together with the associations of the entity graph, in the same select.
+     *
+     * @param answerUuid  uuid of the answer
+     * @param entityGraph name of the entity graph of AnswerEntity to fetch, such as AnswerEntity.WITH_USER
+     * @return the answer or null if it does not exist
+     */
+    public AnswerEntity getAnswerById(final String answerUuid, final String entityGraph) {
+        final UUID uuid = Uuids.parse(answerUuid);
+        if (uuid == null) {
+            return null;
+        }
         try {
-            return entityManager.createNamedQuery("answerByUuid", AnswerEntity.class).setParameter("uuid", answerUuid).getSingleResult();
+            return entityManager.createNamedQuery("answerByUuid", AnswerEntity.class).setParameter("uuid", uuid)
+                    .setHint(FETCH_GRAPH_HINT, entityManager.getEntityGraph(entityGraph)).getSingleResult();
         } catch (NoResultException nre) {
             return null;
         }
@@ -36,11 +90,24 @@ public class AnswerDao {
         return answerEntity;
     }
 
-    public List<AnswerEntity> getAllAnswersByQuestionId(String questionId) {
-        try {
-            return entityManager.createNamedQuery("getAllAnswersByQuestionId", AnswerEntity.class).setParameter("uuid", questionId).getResultList();
-        } catch (NoResultException nre) {
-            return null;
+    /**
+     * This method returns the answers to the question which follow the cursor in the sort order.
+     *
+     * @param question   question whose answers are listed
+     * @param sortOrder  order of the answers by date and id
+     * @param after      key of the last answer of the previous page, null for the first page
+     * @param maxResults maximum number of answers returned
+     * @return summaries of the answers of the question in the sort order
+     */
+    public List<AnswerSummary> getAnswersByQuestion(final QuestionEntity question, final SortOrder sortOrder, final PageCursor after, final int maxResults) {
+        final boolean newest = sortOrder == SortOrder.NEWEST;
+        final TypedQuery<AnswerSummary> query;
+        if (after == null) {
+            query = entityManager.createNamedQuery(newest ? "answersByQuestionNewestFirst" : "answersByQuestionOldestFirst", AnswerSummary.class);
+        } else {
+            query = entityManager.createNamedQuery(newest ? "answersByQuestionNewestAfter" : "answersByQuestionOldestAfter", AnswerSummary.class)
+                    .setParameter("date", after.getDate()).setParameter("id", after.getId());
         }
+        return query.setParameter("question", question).setMaxResults(maxResults).getResultList();
     }
 }
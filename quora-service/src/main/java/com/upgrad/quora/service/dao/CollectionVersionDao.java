@@ -0,0 +1,164 @@
+package com.upgrad.quora.service.dao;
+
+import org.hibernate.query.NativeQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Version counters of the listed collections, kept in the collection_version table.
+ * A counter is incremented once the transaction of a change of its collection has committed, in a short transaction of its own,
+ * on whichever node the change was made; a counter which has never been incremented is at version 0.
+ * <p>
+ * Incrementing the counters in the transaction of the change would hold the lock of their row until that transaction ends,
+ * so every write to the questions would wait for the one before it. Incremented after the commit, a counter only moves
+ * a moment after the change is visible: a client polling in between still gets a 304, and the change with its next poll.
+ * An increment which fails after the commit is retried right away, and then every second until it succeeds, since the listings
+ * would otherwise be answered with a 304 until the next change of their collection.
+ */
+@Repository
+@ManagedResource(objectName = "com.upgrad.quora:type=CollectionVersionDao")
+public class CollectionVersionDao {
+
+    /**
+     * Counter of all the questions, incremented whenever a question is created, edited or deleted.
+     */
+    public static final String QUESTIONS = "questions";
+
+    /**
+     * Counter of all the answers, incremented when answers to any question may have been deleted at once, as with a deleted user.
+     */
+    public static final String ANSWERS = "answers";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CollectionVersionDao.class);
+
+    private static final String TABLE = "collection_version";
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // counters whose increment failed after the commit of their change, incremented again by retryFailedIncrements
+    private final Set<String> pendingIncrements = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder failedIncrements = new LongAdder();
+
+    /**
+     * @param questionId id of the question
+     * @return name of the counter of the answers to the question
+     */
+    public static String answersTo(final Integer questionId) {
+        return ANSWERS + ":" + questionId;
+    }
+
+    /**
+     * This method increments the counters, creating those which do not exist yet, once the current transaction has committed.
+     * Nothing is incremented if the transaction rolls back.
+     *
+     * @param collections names of the counters
+     */
+    public void increment(final String... collections) {
+        // sorted, so that two transactions incrementing the same counters lock their rows in the same order
+        final SortedSet<String> names = new TreeSet<>(Arrays.asList(collections));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            incrementNow(names);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                incrementAfterCommit(names);
+            }
+        });
+    }
+
+    /**
+     * This method increments again the counters whose increment failed after the commit of their change.
+     */
+    @Scheduled(initialDelay = 1000, fixedDelay = 1000)
+    public void retryFailedIncrements() {
+        if (pendingIncrements.isEmpty()) {
+            return;
+        }
+        // taken out before the increment, so that a counter failing again meanwhile stays pending
+        final SortedSet<String> names = new TreeSet<>(pendingIncrements);
+        pendingIncrements.removeAll(names);
+        incrementAfterCommit(names);
+    }
+
+    @ManagedAttribute(description = "Number of increments which failed after the commit of their change")
+    public long getFailedIncrements() {
+        return failedIncrements.sum();
+    }
+
+    @ManagedAttribute(description = "Number of counters waiting for their increment to be retried")
+    public int getPendingIncrements() {
+        return pendingIncrements.size();
+    }
+
+    private void incrementAfterCommit(final SortedSet<String> names) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                incrementNow(names);
+                return;
+            } catch (RuntimeException e) {
+                // the change is committed whatever happens here, so the counters must still move for the listings to be polled again
+                failedIncrements.increment();
+                if (attempt == MAX_ATTEMPTS) {
+                    pendingIncrements.addAll(names);
+                    LOGGER.warn("Could not increment the version of {}, retrying in the background", names, e);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void incrementNow(final SortedSet<String> names) {
+        final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transactionTemplate.execute(status -> {
+            for (final String name : names) {
+                // the query space keeps Hibernate from evicting the whole second-level cache after the native update
+                entityManager.createNativeQuery("INSERT INTO collection_version(name, version) VALUES (:name, 1) ON CONFLICT (name) DO UPDATE SET version = collection_version.version + 1")
+                        .unwrap(NativeQuery.class).addSynchronizedQuerySpace(TABLE)
+                        .setParameter("name", name).executeUpdate();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * This method returns the sum of the counters, which increases whenever any of them is incremented.
+     *
+     * @param collections names of the counters
+     * @return version of the collections
+     */
+    public long getVersion(final String... collections) {
+        final List<String> names = Arrays.asList(collections);
+        return ((Number) entityManager.createNativeQuery("SELECT coalesce(sum(version), 0) FROM collection_version WHERE name IN (:names)")
+                .setParameter("names", names).getSingleResult()).longValue();
+    }
+}
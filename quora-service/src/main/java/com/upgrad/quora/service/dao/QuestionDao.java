@@ -1,55 +1,210 @@
 package com.upgrad.quora.service.dao;
 
+import com.upgrad.quora.service.common.PageCursor;
+import com.upgrad.quora.service.common.SearchCursor;
+import com.upgrad.quora.service.common.Uuids;
+import com.upgrad.quora.service.dto.IndexedQuestion;
+import com.upgrad.quora.service.dto.QuestionSearchHit;
+import com.upgrad.quora.service.dto.QuestionSummary;
 import com.upgrad.quora.service.entity.QuestionEntity;
+import com.upgrad.quora.service.search.IndexFingerprint;
+import com.upgrad.quora.service.search.QuestionSearchIndex;
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
 import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
 
 @Repository
 public class QuestionDao {
 
+    private static final String FETCH_GRAPH_HINT = "javax.persistence.fetchgraph";
+
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Autowired
+    private QuestionSearchIndex questionSearchIndex;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
     public QuestionEntity createQuestion(QuestionEntity questionEntity) {
         entityManager.persist(questionEntity);
+        questionSearchIndex.questionSaved(questionEntity);
         return questionEntity;
     }
 
+    /**
+     * This method inserts the questions in JDBC batches. The persistence context is flushed and cleared after every batch,
+     * so the inserts of a batch are sent together and the created questions do not pile up in memory;
+     * entities loaded earlier in the transaction are detached by the clear.
+     *
+     * @param questionEntities new questions, with their user set
+     */
+    public void createQuestions(final List<QuestionEntity> questionEntities) {
+        for (int i = 0; i < questionEntities.size(); i++) {
+            final QuestionEntity questionEntity = questionEntities.get(i);
+            entityManager.persist(questionEntity);
+            questionSearchIndex.questionSaved(questionEntity);
+            if ((i + 1) % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+    }
+
+    /**
+     * This method looks the question up by its natural id, so a cached question is returned without querying the database.
+     *
+     * @param questionUuid uuid of the question
+     * @return the question or null if it does not exist, which is the case of any value that is not a uuid
+     */
     public QuestionEntity getQuestionById(final String questionUuid) {
+        final UUID uuid = Uuids.parse(questionUuid);
+        return uuid == null ? null : entityManager.unwrap(Session.class).bySimpleNaturalId(QuestionEntity.class).load(uuid);
+    }
+
+    /**
+     * This method returns the question together with the associations of the entity graph, in the same select.
+     *
+     * @param questionUuid uuid of the question
+     * @param entityGraph  name of the entity graph of QuestionEntity to fetch, such as QuestionEntity.WITH_USER
+     * @return the question or null if it does not exist
+     */
+    public QuestionEntity getQuestionById(final String questionUuid, final String entityGraph) {
+        final UUID uuid = Uuids.parse(questionUuid);
+        if (uuid == null) {
+            return null;
+        }
         try {
-            return entityManager.createNamedQuery("questionByUuid", QuestionEntity.class).setParameter("uuid", questionUuid)
-                    .getSingleResult();
+            return entityManager.createNamedQuery("questionByUuid", QuestionEntity.class).setParameter("uuid", uuid)
+                    .setHint(FETCH_GRAPH_HINT, entityManager.getEntityGraph(entityGraph)).getSingleResult();
         } catch (NoResultException nre) {
             return null;
         }
     }
 
-    public List<QuestionEntity> getAllQuestions() {
-        try {
-            return entityManager.createNamedQuery("getAllQuestion", QuestionEntity.class)
-                    .getResultList();
-        } catch (NoResultException nre) {
-            return null;
+    /**
+     * This method returns the questions following the cursor, newest first.
+     *
+     * @param after      key of the last question of the previous page, null for the first page
+     * @param maxResults maximum number of questions returned
+     * @return summaries of the questions ordered by date and id, both descending
+     */
+    public List<QuestionSummary> getQuestions(final PageCursor after, final int maxResults) {
+        final TypedQuery<QuestionSummary> query;
+        if (after == null) {
+            query = entityManager.createNamedQuery("getQuestionsFirstPage", QuestionSummary.class);
+        } else {
+            query = entityManager.createNamedQuery("getQuestionsAfter", QuestionSummary.class)
+                    .setParameter("date", after.getDate()).setParameter("id", after.getId());
+        }
+        return query.setMaxResults(maxResults).getResultList();
+    }
+
+    /**
+     * This method returns the questions matching the full-text search query which follow the cursor, best ranked first.
+     * The matching questions are found through the GIN index on the search_vector column.
+     *
+     * @param query      search query, in the web search syntax of websearch_to_tsquery
+     * @param after      key of the last result of the previous page, null for the first page
+     * @param maxResults maximum number of questions returned
+     * @return matching questions ordered by rank and id, both descending
+     */
+    @SuppressWarnings("unchecked")
+    public List<QuestionSearchHit> searchQuestions(final String query, final SearchCursor after, final int maxResults) {
+        final Query<?> searchQuery;
+        final Session session = entityManager.unwrap(Session.class);
+        if (after == null) {
+            searchQuery = session.getNamedNativeQuery("searchQuestionsFirstPage");
+        } else {
+            searchQuery = session.getNamedNativeQuery("searchQuestionsAfter").setParameter("rank", after.getRank()).setParameter("id", after.getId());
+        }
+        return (List<QuestionSearchHit>) searchQuery.setParameter("query", query).setMaxResults(maxResults).getResultList();
+    }
+
+    /**
+     * This method hands every question to the consumer, reading them through a forward-only database cursor
+     * instead of loading them all at once. The persistence context is cleared after every batch of fetchSize questions,
+     * so memory use does not depend on the number of questions. Must be called in a transaction, which keeps the cursor open.
+     *
+     * @param fetchSize number of questions read from the database at a time
+     * @param consumer  receives the questions in id order
+     * @return number of questions exported
+     */
+    public long forEachQuestion(final int fetchSize, final Consumer<QuestionEntity> consumer) {
+        final Session session = entityManager.unwrap(Session.class);
+        final Query<QuestionEntity> query = session.createNamedQuery("exportQuestions", QuestionEntity.class)
+                .setFetchSize(fetchSize).setReadOnly(true).setCacheMode(CacheMode.IGNORE);
+        long count = 0;
+        try (ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                consumer.accept((QuestionEntity) results.get(0));
+                if (++count % fetchSize == 0) {
+                    session.clear();
+                }
+            }
         }
+        return count;
+    }
+
+    /**
+     * This method returns the questions whose id is in the range, as held by the in-memory search index.
+     *
+     * @param fromId lowest id of the range
+     * @param toId   id following the range
+     * @return questions of the range in id order
+     */
+    public List<IndexedQuestion> getQuestionsForIndex(final int fromId, final int toId) {
+        return entityManager.createNamedQuery("questionsForIndex", IndexedQuestion.class)
+                .setParameter("fromId", fromId).setParameter("toId", toId).getResultList();
+    }
+
+    /**
+     * @return highest question id, or null if there is no question
+     */
+    public Integer getMaxQuestionId() {
+        return entityManager.createQuery("select max(qe.id) from QuestionEntity qe", Integer.class).getSingleResult();
+    }
+
+    /**
+     * This method computes the fingerprint of the question table in the database, which only sends back two numbers.
+     *
+     * @return number of questions and sum of their checksums, as computed by IndexFingerprint
+     */
+    public IndexFingerprint getIndexFingerprint() {
+        final Object[] fingerprint = (Object[]) entityManager.createNativeQuery("SELECT count(*), coalesce(sum(CAST(CAST('x' || substr(md5(id || '|' || uuid || '|' || content), 1, 8) AS BIT(32)) AS INTEGER)), 0) FROM question")
+                .getSingleResult();
+        return new IndexFingerprint(((Number) fingerprint[0]).longValue(), ((Number) fingerprint[1]).longValue());
     }
 
     public QuestionEntity updateQuestion(QuestionEntity questionEntity) {
         entityManager.merge(questionEntity);
+        questionSearchIndex.questionSaved(questionEntity);
         return  questionEntity;
     }
 
     public QuestionEntity deleteQuestion(QuestionEntity questionEntityFromDB) {
         entityManager.remove(questionEntityFromDB);
+        questionSearchIndex.questionDeleted(questionEntityFromDB.getId());
         return questionEntityFromDB;
     }
 
-    public List<QuestionEntity> getAllQuestionsByUser(String userId) {
+    public List<QuestionSummary> getAllQuestionsByUser(String userId) {
         try {
-            return entityManager.createNamedQuery("getAllQuestionByUser", QuestionEntity.class).setParameter("uuid", userId)
+            return entityManager.createNamedQuery("getAllQuestionByUser", QuestionSummary.class).setParameter("uuid", Uuids.parse(userId))
                     .getResultList();
         } catch (NoResultException nre) {
             return null;
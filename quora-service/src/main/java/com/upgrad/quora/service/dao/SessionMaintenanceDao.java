@@ -0,0 +1,103 @@
+package com.upgrad.quora.service.dao;
+
+import org.hibernate.query.NativeQuery;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Housekeeping queries on the user_auth table, run by the SessionReaper outside of any request.
+ * The callers provide the transactions; every method is meant to be a short transaction of its own.
+ */
+@Repository
+public class SessionMaintenanceDao {
+
+    private static final String USER_AUTH = "user_auth";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * This method deletes at most batchSize sessions which expired before the cutoff.
+     *
+     * @param cutoff    sessions which expired before this time are deleted
+     * @param batchSize maximum number of rows deleted
+     * @return number of deleted rows
+     */
+    public int deleteExpiredSessions(final LocalDateTime cutoff, final int batchSize) {
+        return deleteSessions("expires_at < :cutoff", cutoff, batchSize);
+    }
+
+    /**
+     * This method deletes at most batchSize sessions which were signed out before the cutoff, found through the partial index on logout_at.
+     *
+     * @param cutoff    sessions which were signed out before this time are deleted
+     * @param batchSize maximum number of rows deleted
+     * @return number of deleted rows
+     */
+    public int deleteSignedOutSessions(final LocalDateTime cutoff, final int batchSize) {
+        return deleteSessions("logout_at < :cutoff", cutoff, batchSize);
+    }
+
+    /**
+     * This method deletes the revocations of deleted users which ended before the given time.
+     *
+     * @param now current time
+     * @return number of deleted rows
+     */
+    public int deleteEndedUserRevocations(final LocalDateTime now) {
+        return entityManager.createNativeQuery("DELETE FROM user_revocation WHERE revoked_until < :now")
+                .setParameter("now", now)
+                .unwrap(NativeQuery.class).addSynchronizedQuerySpace("user_revocation")
+                .executeUpdate();
+    }
+
+    /**
+     * @return true if user_auth is a table partitioned by expires_at
+     */
+    public boolean isPartitioned() {
+        final List<?> relkind = entityManager.createNativeQuery("SELECT CAST(relkind AS VARCHAR) FROM pg_class WHERE oid = to_regclass('user_auth')").getResultList();
+        return !relkind.isEmpty() && "p".equals(relkind.get(0));
+    }
+
+    /**
+     * @return names of the partitions of user_auth, including the default partition
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> getPartitionNames() {
+        return entityManager.createNativeQuery("SELECT CAST(c.relname AS VARCHAR) FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = to_regclass('user_auth')")
+                .getResultList();
+    }
+
+    /**
+     * This method creates the monthly partition which holds the sessions expiring in the month of the given day, unless it exists.
+     *
+     * @param month any day of the month
+     * @return name of the partition
+     */
+    public String createPartition(final LocalDate month) {
+        return (String) entityManager.createNativeQuery("SELECT USER_AUTH_CREATE_PARTITION(CAST(:month AS DATE))")
+                .setParameter("month", month).getSingleResult();
+    }
+
+    /**
+     * This method detaches the partition from user_auth and drops it, which removes all of its sessions at once.
+     *
+     * @param partitionName name of a partition returned by getPartitionNames
+     */
+    public void dropPartition(final String partitionName) {
+        entityManager.createNativeQuery("SELECT USER_AUTH_DROP_PARTITION(:partitionName)")
+                .setParameter("partitionName", partitionName).getSingleResult();
+    }
+
+    private int deleteSessions(final String condition, final LocalDateTime cutoff, final int batchSize) {
+        return entityManager.createNativeQuery("DELETE FROM user_auth WHERE id IN (SELECT id FROM user_auth WHERE " + condition + " LIMIT :batchSize)")
+                .setParameter("cutoff", cutoff).setParameter("batchSize", batchSize)
+                .unwrap(NativeQuery.class).addSynchronizedQuerySpace(USER_AUTH)
+                .executeUpdate();
+    }
+}
@@ -1,12 +1,27 @@
 package com.upgrad.quora.service.dao;
 
+import com.upgrad.quora.service.cache.SessionCache;
+import com.upgrad.quora.service.common.TokenDigest;
+import com.upgrad.quora.service.common.Uuids;
+import com.upgrad.quora.service.entity.QuestionEntity;
 import com.upgrad.quora.service.entity.UserAuthEntity;
 import com.upgrad.quora.service.entity.UserEntity;
+import com.upgrad.quora.service.search.QuestionSearchIndex;
+import org.hibernate.Cache;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
 
 @Repository
 public class UserDao {
@@ -14,28 +29,71 @@ public class UserDao {
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Autowired
+    private SessionCache sessionCache;
+
+    @Autowired
+    private QuestionSearchIndex questionSearchIndex;
+
     public UserEntity createUser(UserEntity userEntity) {
         entityManager.persist(userEntity);
         return userEntity;
     }
 
+    /**
+     * This method looks the user up by its natural id, so a cached user is returned without querying the database.
+     *
+     * @param userUuid uuid of the user
+     * @return the user or null if it does not exist, which is the case of any value that is not a uuid
+     */
     public UserEntity getUserById(final String userUuid) {
-        try {
-            return entityManager.createNamedQuery("userByUuid", UserEntity.class).setParameter("uuid", userUuid)
-                    .getSingleResult();
-        } catch (NoResultException nre) {
-            return null;
-        }
+        final UUID uuid = Uuids.parse(userUuid);
+        return uuid == null ? null : entityManager.unwrap(Session.class).bySimpleNaturalId(UserEntity.class).load(uuid);
+    }
+
+    /**
+     * This method records that the tokens of the deleted user are revoked until the given time, so that the nodes which
+     * missed the notification of the deletion deny them once they resync.
+     *
+     * @param userUuid     uuid of the deleted user
+     * @param revokedUntil time after which every token issued to the user has expired
+     */
+    public void createUserRevocation(final String userUuid, final LocalDateTime revokedUntil) {
+        entityManager.createNativeQuery("INSERT INTO user_revocation(user_uuid, revoked_until) VALUES (CAST(:userUuid AS UUID), :revokedUntil) "
+                + "ON CONFLICT (user_uuid) DO UPDATE SET revoked_until = GREATEST(user_revocation.revoked_until, EXCLUDED.revoked_until)")
+                .setParameter("userUuid", userUuid).setParameter("revokedUntil", revokedUntil)
+                .unwrap(NativeQuery.class).addSynchronizedQuerySpace("user_revocation")
+                .executeUpdate();
+    }
+
+    /**
+     * This method looks the user up by its primary key, so a cached user is returned without querying the database.
+     *
+     * @param userId id of the user
+     * @return the user or null if it does not exist, such as a user deleted after the token was issued
+     */
+    public UserEntity getUserByPrimaryKey(final Integer userId) {
+        return entityManager.find(UserEntity.class, userId);
     }
 
     public UserAuthEntity createAuthToken(final UserAuthEntity userAuthEntity) {
+        if (userAuthEntity.getAccessTokenDigest() == null) {
+            userAuthEntity.setAccessTokenDigest(TokenDigest.sha256Hex(userAuthEntity.getAccessToken()));
+        }
         entityManager.persist(userAuthEntity);
         return userAuthEntity;
     }
 
     public UserAuthEntity getUserAuthToken(final String accessToken) {
+        final String accessTokenDigest = TokenDigest.sha256Hex(accessToken);
+        final UserAuthEntity cachedUserAuthEntity = sessionCache.get(accessTokenDigest);
+        if (cachedUserAuthEntity != null) {
+            return cachedUserAuthEntity;
+        }
         try {
-            return entityManager.createNamedQuery("userAuthByAccessToken", UserAuthEntity.class).setParameter("accessToken", accessToken).getSingleResult();
+            final UserAuthEntity userAuthEntity = entityManager.createNamedQuery("userAuthByAccessTokenDigest", UserAuthEntity.class).setParameter("accessTokenDigest", accessTokenDigest).getSingleResult();
+            sessionCache.put(accessTokenDigest, userAuthEntity);
+            return userAuthEntity;
         } catch (NoResultException nre) {
 
             return null;
@@ -43,6 +101,10 @@ public class UserDao {
 
     }
 
+    public void evictAuthToken(final String accessToken) {
+        sessionCache.invalidate(TokenDigest.sha256Hex(accessToken));
+    }
+
     public UserEntity getUserByUserName(final String userName) {
         try {
             return entityManager.createNamedQuery("userByUserName", UserEntity.class).setParameter("username", userName).getSingleResult();
@@ -61,10 +123,35 @@ public class UserDao {
     }
 
     public UserEntity deleteUser(UserEntity userEntity) {
+        final List<Integer> questionIds = entityManager.createQuery("select qe.id from QuestionEntity qe where qe.user = :user", Integer.class)
+                .setParameter("user", userEntity).getResultList();
         entityManager.remove(userEntity);
+        sessionCache.invalidateUser(userEntity.getUuid());
+        evictCascadedQuestions(questionIds);
+        questionSearchIndex.userDeleted(userEntity.getId());
         return userEntity;
     }
 
+    /**
+     * The questions of a deleted user are removed by the ON DELETE CASCADE of the database, behind the back of the second-level cache,
+     * so the cached questions of the user are evicted once the deletion has committed. Their cached natural ids are left in place:
+     * they only lead to a question id which is no longer found, so the lookup by uuid still returns null.
+     */
+    private void evictCascadedQuestions(final List<Integer> questionIds) {
+        final Cache cache = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getCache();
+        final Runnable eviction = () -> questionIds.forEach(questionId -> cache.evictEntity(QuestionEntity.class, questionId));
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eviction.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                eviction.run();
+            }
+        });
+    }
+
     public UserEntity getUserByEmail(String email) {
         try {
             return entityManager.createNamedQuery("userByEmail", UserEntity.class).setParameter("email", email).getSingleResult();
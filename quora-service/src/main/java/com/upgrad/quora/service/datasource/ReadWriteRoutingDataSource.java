@@ -0,0 +1,64 @@
+package com.upgrad.quora.service.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DataSource which hands out replica connections to read-only transactions and primary connections to everything else.
+ * <p>
+ * The decision is taken when the connection is fetched, so this DataSource must be wrapped in a LazyConnectionDataSourceProxy:
+ * the transaction manager then only fetches the connection at the first statement, once the read-only flag of the transaction is known.
+ * Read-only transactions of a user who has just written go to the primary as well, so users always see their own writes.
+ */
+@ManagedResource(objectName = "com.upgrad.quora:type=ReadWriteRoutingDataSource")
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Target {
+        PRIMARY, REPLICA
+    }
+
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    private final LongAdder primaryConnections = new LongAdder();
+
+    private final LongAdder replicaConnections = new LongAdder();
+
+    public ReadWriteRoutingDataSource(final ReadYourWritesTracker readYourWritesTracker) {
+        this.readYourWritesTracker = readYourWritesTracker;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        final String userUuid = readYourWritesTracker.getCurrentUser();
+        final boolean readOnly = TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+        if (readOnly && (userUuid == null || !readYourWritesTracker.wroteRecently(userUuid))) {
+            replicaConnections.increment();
+            return Target.REPLICA;
+        }
+        primaryConnections.increment();
+        if (!readOnly && userUuid != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    readYourWritesTracker.recordWrite(userUuid);
+                }
+            });
+        }
+        return Target.PRIMARY;
+    }
+
+    @ManagedAttribute
+    public long getPrimaryConnections() {
+        return primaryConnections.sum();
+    }
+
+    @ManagedAttribute
+    public long getReplicaConnections() {
+        return replicaConnections.sum();
+    }
+}
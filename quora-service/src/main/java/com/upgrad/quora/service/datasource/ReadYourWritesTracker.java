@@ -0,0 +1,75 @@
+package com.upgrad.quora.service.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers which users have recently committed a write, so that their reads are served by the primary
+ * until the replicas have had time to catch up with the write.
+ * <p>
+ * The user on whose behalf the current thread works is bound by the web layer once the access token has been resolved.
+ * Writes older than the window are purged in the background once per window, so recording a write never scans the map.
+ */
+@Component
+public class ReadYourWritesTracker {
+
+    private final ThreadLocal<String> currentUser = new ThreadLocal<>();
+
+    private final ConcurrentMap<String, Long> lastWriteMillis = new ConcurrentHashMap<>();
+
+    private final long windowMillis;
+
+    public ReadYourWritesTracker(@Value("${quora.datasource.replica.read-your-writes-millis:5000}") final long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    public void setCurrentUser(final String userUuid) {
+        currentUser.set(userUuid);
+    }
+
+    public String getCurrentUser() {
+        return currentUser.get();
+    }
+
+    public void clearCurrentUser() {
+        currentUser.remove();
+    }
+
+    /**
+     * This method records that a write of the user has just committed.
+     *
+     * @param userUuid uuid of the user who wrote
+     */
+    public void recordWrite(final String userUuid) {
+        lastWriteMillis.put(userUuid, System.currentTimeMillis());
+    }
+
+    /**
+     * @param userUuid uuid of the user
+     * @return true if a write of the user committed less than the configured window ago
+     */
+    public boolean wroteRecently(final String userUuid) {
+        final Long writtenAt = lastWriteMillis.get(userUuid);
+        if (writtenAt == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - writtenAt < windowMillis) {
+            return true;
+        }
+        lastWriteMillis.remove(userUuid, writtenAt);
+        return false;
+    }
+
+    /**
+     * This method forgets the writes older than the window, which only the users who stopped writing leave behind.
+     */
+    @Scheduled(fixedDelayString = "${quora.datasource.replica.read-your-writes-millis:5000}")
+    public void purgeExpired() {
+        final long cutoff = System.currentTimeMillis() - windowMillis;
+        lastWriteMillis.entrySet().removeIf(entry -> entry.getValue() <= cutoff);
+    }
+}
@@ -0,0 +1,70 @@
+package com.upgrad.quora.service.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replaces the auto-configured DataSource by one which routes read-only transactions to a replica,
+ * as soon as quora.datasource.replica.url is set. The primary pool keeps the spring.datasource settings,
+ * and the replica pool uses the credentials of the primary unless quora.datasource.replica.username and password are set.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "quora.datasource.replica", name = "url")
+public class ReplicaRoutingConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(final DataSourceProperties properties) {
+        final HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("quora.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(final DataSourceProperties properties,
+                                              @Value("${quora.datasource.replica.url}") final String url,
+                                              @Value("${quora.datasource.replica.username:${spring.datasource.username:}}") final String username,
+                                              @Value("${quora.datasource.replica.password:${spring.datasource.password:}}") final String password) {
+        final HikariDataSource dataSource = DataSourceBuilder.create(properties.getClassLoader()).type(HikariDataSource.class)
+                .driverClassName(properties.determineDriverClassName()).url(url).username(username).password(password).build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReadWriteRoutingDataSource routingDataSource(@Qualifier("primaryDataSource") final DataSource primaryDataSource,
+                                                       @Qualifier("replicaDataSource") final DataSource replicaDataSource,
+                                                       final ReadYourWritesTracker readYourWritesTracker) {
+        final ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource(readYourWritesTracker);
+        final Map<Object, Object> targetDataSources = new HashMap<>();
+        targetDataSources.put(ReadWriteRoutingDataSource.Target.PRIMARY, primaryDataSource);
+        targetDataSources.put(ReadWriteRoutingDataSource.Target.REPLICA, replicaDataSource);
+        routingDataSource.setTargetDataSources(targetDataSources);
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource);
+        return routingDataSource;
+    }
+
+    /**
+     * DataSource used by JPA and everything else in the application.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("routingDataSource") final DataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
@@ -0,0 +1,45 @@
+package com.upgrad.quora.service.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Read-only view of an answer together with the content of its question, selected by the listing queries with a constructor expression.
+ * Neither the user nor the question entity is loaded.
+ */
+public final class AnswerSummary {
+
+    private final Integer id;
+    private final String uuid;
+    private final String ans;
+    private final LocalDateTime date;
+    private final String questionContent;
+
+    public AnswerSummary(final Integer id, final UUID uuid, final String ans, final LocalDateTime date, final String questionContent) {
+        this.id = id;
+        this.uuid = uuid.toString();
+        this.ans = ans;
+        this.date = date;
+        this.questionContent = questionContent;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getAns() {
+        return ans;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    public String getQuestionContent() {
+        return questionContent;
+    }
+}
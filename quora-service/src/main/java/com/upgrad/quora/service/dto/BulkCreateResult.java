@@ -0,0 +1,56 @@
+package com.upgrad.quora.service.dto;
+
+/**
+ * Outcome of one item of a bulk creation: the uuid of the created entity, or the code and message of the reason it was rejected.
+ */
+public final class BulkCreateResult {
+
+    private final int index;
+    private final String uuid;
+    private final String code;
+    private final String errorMessage;
+
+    private BulkCreateResult(final int index, final String uuid, final String code, final String errorMessage) {
+        this.index = index;
+        this.uuid = uuid;
+        this.code = code;
+        this.errorMessage = errorMessage;
+    }
+
+    /**
+     * @param index position of the item in the request
+     * @param uuid  uuid of the created entity
+     */
+    public static BulkCreateResult created(final int index, final String uuid) {
+        return new BulkCreateResult(index, uuid, null, null);
+    }
+
+    /**
+     * @param index        position of the item in the request
+     * @param code         error code, as returned in the error responses
+     * @param errorMessage reason the item was not created
+     */
+    public static BulkCreateResult rejected(final int index, final String code, final String errorMessage) {
+        return new BulkCreateResult(index, null, code, errorMessage);
+    }
+
+    public boolean isCreated() {
+        return code == null;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+}
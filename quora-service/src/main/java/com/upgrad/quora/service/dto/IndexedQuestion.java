@@ -0,0 +1,45 @@
+package com.upgrad.quora.service.dto;
+
+import java.util.UUID;
+
+/**
+ * Read-only view of a question as held by the in-memory search index: the columns the search returns,
+ * and the id of the owner, so that the questions removed by the deletion of their owner can be dropped from the index.
+ */
+public final class IndexedQuestion {
+
+    private final Integer id;
+    private final String uuid;
+    private final String content;
+    private final Integer userId;
+
+    public IndexedQuestion(final Integer id, final String uuid, final String content, final Integer userId) {
+        this.id = id;
+        this.uuid = uuid;
+        this.content = content;
+        this.userId = userId;
+    }
+
+    /**
+     * Constructor of the questionsForIndex query, which selects the uuid column as a UUID.
+     */
+    public IndexedQuestion(final Integer id, final UUID uuid, final String content, final Integer userId) {
+        this(id, uuid.toString(), content, userId);
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public Integer getUserId() {
+        return userId;
+    }
+}
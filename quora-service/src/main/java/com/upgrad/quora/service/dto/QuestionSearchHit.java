@@ -0,0 +1,35 @@
+package com.upgrad.quora.service.dto;
+
+/**
+ * Read-only view of a question found by the full-text search, with the rank of the question for the search query.
+ */
+public final class QuestionSearchHit {
+
+    private final Integer id;
+    private final String uuid;
+    private final String content;
+    private final float rank;
+
+    public QuestionSearchHit(final Integer id, final String uuid, final String content, final Float rank) {
+        this.id = id;
+        this.uuid = uuid;
+        this.content = content;
+        this.rank = rank;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public float getRank() {
+        return rank;
+    }
+}
@@ -0,0 +1,41 @@
+package com.upgrad.quora.service.dto;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Read-only view of a question, selected by the listing queries with a constructor expression.
+ * Only the columns shown by the listings are read; the user of the question is not loaded
+ * and nothing is added to the persistence context, so there is nothing to hydrate or dirty check.
+ * The uuid is kept in the text form the API returns.
+ */
+public final class QuestionSummary {
+
+    private final Integer id;
+    private final String uuid;
+    private final String content;
+    private final LocalDateTime date;
+
+    public QuestionSummary(final Integer id, final UUID uuid, final String content, final LocalDateTime date) {
+        this.id = id;
+        this.uuid = uuid.toString();
+        this.content = content;
+        this.date = date;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+}
@@ -5,10 +5,13 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
+import org.hibernate.annotations.Type;
+
 import javax.persistence.*;
 import javax.validation.constraints.Size;
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 /**
  * This class maps to answer table in database
@@ -19,19 +22,29 @@ import java.time.LocalDateTime;
 @NamedQueries(
     {
         @NamedQuery(name = "answerByUuid", query = "select answer from AnswerEntity answer where answer.uuid = :uuid"),
-        @NamedQuery(name = "getAllAnswersByQuestionId", query = "select ans from AnswerEntity ans where ans.question.uuid = :uuid")
+        @NamedQuery(name = "answersByQuestionNewestFirst", query = "select new com.upgrad.quora.service.dto.AnswerSummary(ans.id, ans.uuid, ans.ans, ans.date, q.content) from AnswerEntity ans join ans.question q where ans.question = :question order by ans.date desc, ans.id desc"),
+        @NamedQuery(name = "answersByQuestionNewestAfter", query = "select new com.upgrad.quora.service.dto.AnswerSummary(ans.id, ans.uuid, ans.ans, ans.date, q.content) from AnswerEntity ans join ans.question q where ans.question = :question and (ans.date, ans.id) < (:date, :id) order by ans.date desc, ans.id desc"),
+        @NamedQuery(name = "answersByQuestionOldestFirst", query = "select new com.upgrad.quora.service.dto.AnswerSummary(ans.id, ans.uuid, ans.ans, ans.date, q.content) from AnswerEntity ans join ans.question q where ans.question = :question order by ans.date asc, ans.id asc"),
+        @NamedQuery(name = "answersByQuestionOldestAfter", query = "select new com.upgrad.quora.service.dto.AnswerSummary(ans.id, ans.uuid, ans.ans, ans.date, q.content) from AnswerEntity ans join ans.question q where ans.question = :question and (ans.date, ans.id) > (:date, :id) order by ans.date asc, ans.id asc")
     }
 )
+@NamedEntityGraph(name = AnswerEntity.WITH_USER, attributeNodes = @NamedAttributeNode("user"))
 public class AnswerEntity implements Serializable {
 
+    /**
+     * Entity graph which loads the owner of the answer along with it.
+     */
+    public static final String WITH_USER = "AnswerEntity.user";
+
     @Id
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "answer_id_seq")
+    @SequenceGenerator(name = "answer_id_seq", sequenceName = "answer_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "uuid")
-    @Size(max = 200)
-    private String uuid;
+    @Type(type = "pg-uuid")
+    private UUID uuid;
 
     @Column(name = "ans")
     @Size(max = 255)
@@ -41,11 +54,11 @@ public class AnswerEntity implements Serializable {
     @Column(name = "date", length = 6)
     private LocalDateTime date;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private UserEntity user;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "question_id")
     private QuestionEntity question;
 
@@ -66,11 +79,11 @@ public class AnswerEntity implements Serializable {
     }
 
     public String getUuid() {
-        return uuid;
+        return uuid == null ? null : uuid.toString();
     }
 
     public void setUuid(String uuid) {
-        this.uuid = uuid;
+        this.uuid = uuid == null ? null : UUID.fromString(uuid);
     }
 
     public String getAns() {
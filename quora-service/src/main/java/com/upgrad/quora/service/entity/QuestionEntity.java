@@ -1,38 +1,79 @@
 package com.upgrad.quora.service.entity;
 
+import com.upgrad.quora.service.dto.QuestionSearchHit;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.Type;
+
 import javax.persistence.*;
 import javax.validation.constraints.Size;
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 /**
  * This class maps to question table in database
+ * Questions are kept in the second-level cache, and looked up by uuid through the natural-id cache.
  * @author chandan
  */
 @Entity
 @Table(name = "question")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "question")
+@NaturalIdCache(region = "question-natural-id")
 @NamedQueries(
         {
                 @NamedQuery(name = "questionByUuid", query = "select question from QuestionEntity question where question.uuid = :uuid"),
-                @NamedQuery(name = "getAllQuestion", query = "select qe from QuestionEntity qe"),
-                @NamedQuery(name = "getAllQuestionByUser", query = "select qe from QuestionEntity qe where qe.user.uuid = :uuid")
+                @NamedQuery(name = "getQuestionsFirstPage", query = "select new com.upgrad.quora.service.dto.QuestionSummary(qe.id, qe.uuid, qe.content, qe.date) from QuestionEntity qe order by qe.date desc, qe.id desc"),
+                @NamedQuery(name = "exportQuestions", query = "select qe from QuestionEntity qe order by qe.id"),
+                @NamedQuery(name = "questionsForIndex", query = "select new com.upgrad.quora.service.dto.IndexedQuestion(qe.id, qe.uuid, qe.content, qe.user.id) from QuestionEntity qe where qe.id >= :fromId and qe.id < :toId order by qe.id"),
+                @NamedQuery(name = "getQuestionsAfter", query = "select new com.upgrad.quora.service.dto.QuestionSummary(qe.id, qe.uuid, qe.content, qe.date) from QuestionEntity qe where (qe.date, qe.id) < (:date, :id) order by qe.date desc, qe.id desc"),
+                @NamedQuery(name = "getAllQuestionByUser", query = "select new com.upgrad.quora.service.dto.QuestionSummary(qe.id, qe.uuid, qe.content, qe.date) from QuestionEntity qe where qe.user.uuid = :uuid")
+        }
+)
+// the search_vector column is maintained by a trigger of the database and only read by the search queries below;
+// the rank of the cursor is bound as a float8, so it is cast back to the real of ts_rank_cd before the ranks are compared
+@NamedNativeQueries(
+        {
+                @NamedNativeQuery(name = "searchQuestionsFirstPage", resultSetMapping = "questionSearchHit",
+                        query = "SELECT id, uuid, content, rank FROM (SELECT q.id, q.uuid, q.content, ts_rank_cd(q.search_vector, query) AS rank FROM question q, websearch_to_tsquery('english', :query) query WHERE q.search_vector @@ query) hits ORDER BY rank DESC, id DESC"),
+                @NamedNativeQuery(name = "searchQuestionsAfter", resultSetMapping = "questionSearchHit",
+                        query = "SELECT id, uuid, content, rank FROM (SELECT q.id, q.uuid, q.content, ts_rank_cd(q.search_vector, query) AS rank FROM question q, websearch_to_tsquery('english', :query) query WHERE q.search_vector @@ query) hits WHERE (rank, id) < (CAST(:rank AS real), :id) ORDER BY rank DESC, id DESC")
         }
 )
+@SqlResultSetMapping(name = "questionSearchHit", classes = @ConstructorResult(targetClass = QuestionSearchHit.class, columns = {
+        @ColumnResult(name = "id", type = Integer.class),
+        @ColumnResult(name = "uuid", type = String.class),
+        @ColumnResult(name = "content", type = String.class),
+        @ColumnResult(name = "rank", type = Float.class)
+}))
+@NamedEntityGraph(name = QuestionEntity.WITH_USER, attributeNodes = @NamedAttributeNode("user"))
 public class QuestionEntity implements Serializable {
 
+    /**
+     * Entity graph which loads the owner of the question along with it.
+     */
+    public static final String WITH_USER = "QuestionEntity.user";
+
     @Id
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // ids are drawn from the sequence before the insert, so that inserts can be batched; the sequence steps by allocationSize
+    // and each of its values is the lowest id of a block the pooled-lo optimizer hands out from memory
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "question_id_seq")
+    @SequenceGenerator(name = "question_id_seq", sequenceName = "question_id_seq", allocationSize = 50)
     private Integer id;
 
+    @NaturalId
     @Column(name = "uuid")
-    @Size(max = 200)
-    private String uuid;
+    @Type(type = "pg-uuid")
+    private UUID uuid;
 
     @Column(name = "content")
     @Size(max = 200)
@@ -42,7 +83,7 @@ public class QuestionEntity implements Serializable {
     @Column(name = "date", length = 6)
     private LocalDateTime date;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private UserEntity user;
 
@@ -55,11 +96,11 @@ public class QuestionEntity implements Serializable {
     }
 
     public String getUuid() {
-        return uuid;
+        return uuid == null ? null : uuid.toString();
     }
 
     public void setUuid(String uuid) {
-        this.uuid = uuid;
+        this.uuid = uuid == null ? null : UUID.fromString(uuid);
     }
 
     public String getContent() {
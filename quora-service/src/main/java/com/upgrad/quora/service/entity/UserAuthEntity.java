@@ -5,11 +5,14 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
+import org.hibernate.annotations.Type;
+
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Size;
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 /**
  * This class maps to user_auth table in database
@@ -18,20 +21,22 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "user_auth")
 @NamedQueries({
-        @NamedQuery(name = "userAuthByAccessToken", query = "select ut from UserAuthEntity ut where ut.accessToken = :accessToken ")
+        @NamedQuery(name = "userAuthByAccessTokenDigest", query = "select ut from UserAuthEntity ut join fetch ut.user where ut.accessTokenDigest = :accessTokenDigest")
 })
 public class UserAuthEntity implements Serializable {
 
     @Id
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_auth_id_seq")
+    @SequenceGenerator(name = "user_auth_id_seq", sequenceName = "user_auth_id_seq", allocationSize = 50)
     private Integer id;
 
     @Column(name = "uuid")
-    @Size(max = 200)
-    private String uuid;
+    @Type(type = "pg-uuid")
+    private UUID uuid;
 
-    @ManyToOne
+    // the user is fetched with the session by userAuthByAccessTokenDigest, since the session cache keeps it beyond the persistence context
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private UserEntity user;
 
@@ -40,6 +45,10 @@ public class UserAuthEntity implements Serializable {
     @Size(max = 500)
     private String accessToken;
 
+    @Column(name = "access_token_digest")
+    @Size(max = 64)
+    private String accessTokenDigest;
+
     // @Temporal(TemporalType.TIMESTAMP)
     @Column(name = "login_at", length = 6)
     private LocalDateTime loginAt;
@@ -61,11 +70,11 @@ public class UserAuthEntity implements Serializable {
     }
 
     public String getUuid() {
-        return uuid;
+        return uuid == null ? null : uuid.toString();
     }
 
     public void setUuid(String uuid) {
-        this.uuid = uuid;
+        this.uuid = uuid == null ? null : UUID.fromString(uuid);
     }
 
     public UserEntity getUser() {
@@ -84,6 +93,14 @@ public class UserAuthEntity implements Serializable {
         this.accessToken = accessToken;
     }
 
+    public String getAccessTokenDigest() {
+        return accessTokenDigest;
+    }
+
+    public void setAccessTokenDigest(String accessTokenDigest) {
+        this.accessTokenDigest = accessTokenDigest;
+    }
+
     public LocalDateTime getLoginAt() {
         return loginAt;
     }
@@ -5,20 +5,29 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+import org.hibernate.annotations.Type;
+
 import javax.persistence.*;
 import javax.validation.constraints.Size;
 import java.io.Serializable;
+import java.util.UUID;
 
 /**
  * This class maps to users table in database
+ * Users are kept in the second-level cache, and looked up by uuid through the natural-id cache.
  * @author chandan
  */
 @Entity
 @Table(name = "users")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user")
+@NaturalIdCache(region = "user-natural-id")
 @NamedQueries(
         {
-                @NamedQuery(name = "userByUuid", query = "select u from UserEntity u where u.uuid = :uuid"),
-
                 @NamedQuery(name = "userByUserName", query = "select u from UserEntity u where u.userName =:username"),
 
                 @NamedQuery(name = "userByEmail", query = "select u from UserEntity u where u.email =:email")
@@ -29,12 +38,15 @@ public class UserEntity implements Serializable {
 
     @Id
     @Column(name = "id")
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_id_seq")
+    @SequenceGenerator(name = "users_id_seq", sequenceName = "users_id_seq", allocationSize = 50)
     private Integer id;
 
+    // stored in a native uuid column, and exposed in its canonical text form like every id of the API
+    @NaturalId
     @Column(name = "uuid")
-    @Size(max = 200)
-    private String uuid;
+    @Type(type = "pg-uuid")
+    private UUID uuid;
 
     @Column(name = "firstname")
     @Size(max = 30)
@@ -89,11 +101,11 @@ public class UserEntity implements Serializable {
     }
 
     public String getUuid() {
-        return uuid;
+        return uuid == null ? null : uuid.toString();
     }
 
     public void setUuid(String uuid) {
-        this.uuid = uuid;
+        this.uuid = uuid == null ? null : UUID.fromString(uuid);
     }
 
     public String getFirstName() {
@@ -0,0 +1,70 @@
+package com.upgrad.quora.service.search;
+
+import com.upgrad.quora.service.common.GenericErrorCode;
+import com.upgrad.quora.service.common.UnexpectedException;
+import com.upgrad.quora.service.dto.IndexedQuestion;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Number of questions and sum of a checksum of every question, computed alike by the database and by the index.
+ * A snapshot of the index is only used when its fingerprint matches the one of the question table,
+ * which the database computes in one scan without sending the questions.
+ * <p>
+ * The checksum of a question is the first four bytes of the MD5 of "id|uuid|content", read as a signed big-endian int,
+ * so that the database computes the same value with md5 and a cast to integer.
+ */
+public final class IndexFingerprint {
+
+    private final long count;
+    private final long checksum;
+
+    public IndexFingerprint(final long count, final long checksum) {
+        this.count = count;
+        this.checksum = checksum;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @param question question of the index
+     * @return contribution of the question to the checksum
+     */
+    static int checksum(final IndexedQuestion question) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("MD5")
+                    .digest((question.getId() + "|" + question.getUuid() + "|" + question.getContent()).getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest).getInt();
+        } catch (NoSuchAlgorithmException e) {
+            throw new UnexpectedException(GenericErrorCode.GEN_001, e);
+        }
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (!(obj instanceof IndexFingerprint)) {
+            return false;
+        }
+        final IndexFingerprint other = (IndexFingerprint) obj;
+        return count == other.count && checksum == other.checksum;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(count) * 31 + Long.hashCode(checksum);
+    }
+
+    @Override
+    public String toString() {
+        return count + " questions, checksum " + checksum;
+    }
+}
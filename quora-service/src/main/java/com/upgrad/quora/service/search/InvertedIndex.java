@@ -0,0 +1,277 @@
+package com.upgrad.quora.service.search;
+
+import com.upgrad.quora.service.common.SearchCursor;
+import com.upgrad.quora.service.dto.IndexedQuestion;
+import com.upgrad.quora.service.dto.QuestionSearchHit;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Inverted index of the content of the questions: the posting list of every term, and the questions themselves
+ * so that the search returns them without going to the database. Not thread safe, the QuestionSearchIndex guards it.
+ * <p>
+ * Terms are the runs of letters and digits of the content, lower cased; there is no stemming and no stop word.
+ * A question matches when it contains every term of the query, and is ranked by the number of occurrences of the terms
+ * in the question. Like the rank of the database, it depends on the question alone: a weight by how rare the term is
+ * among all the questions would change every rank on every write, and move the results around the cursors of the next pages.
+ */
+final class InvertedIndex {
+
+    private static final int SNAPSHOT_MAGIC = 0x51534958;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    /**
+     * Best ranked first, the order of the search results and of their cursors.
+     */
+    private static final Comparator<QuestionSearchHit> RANK_ORDER = Comparator.comparing(QuestionSearchHit::getRank)
+            .thenComparing(QuestionSearchHit::getId).reversed();
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+
+    private final Map<Integer, IndexedQuestion> questions = new HashMap<>();
+
+    private long checksum;
+
+    int getQuestionCount() {
+        return questions.size();
+    }
+
+    int getTermCount() {
+        return postings.size();
+    }
+
+    IndexFingerprint getFingerprint() {
+        return new IndexFingerprint(questions.size(), checksum);
+    }
+
+    /**
+     * This method adds the question to the index, or replaces it if the question is indexed already.
+     */
+    void put(final IndexedQuestion question) {
+        remove(question.getId());
+        final int questionId = question.getId();
+        for (final Map.Entry<String, Integer> term : termFrequencies(question.getContent()).entrySet()) {
+            postings.computeIfAbsent(term.getKey(), key -> new PostingList()).put(questionId, term.getValue());
+        }
+        questions.put(questionId, question);
+        checksum += IndexFingerprint.checksum(question);
+    }
+
+    /**
+     * @return true if the question was indexed
+     */
+    boolean remove(final Integer questionId) {
+        final IndexedQuestion question = questions.remove(questionId);
+        if (question == null) {
+            return false;
+        }
+        for (final String term : termFrequencies(question.getContent()).keySet()) {
+            final PostingList postingList = postings.get(term);
+            if (postingList != null && postingList.remove(questionId) && postingList.size() == 0) {
+                postings.remove(term);
+            }
+        }
+        checksum -= IndexFingerprint.checksum(question);
+        return true;
+    }
+
+    /**
+     * This method removes every question of the user, as the database does when the user is deleted.
+     *
+     * @return number of questions removed
+     */
+    int removeUser(final Integer userId) {
+        final List<Integer> questionIds = new ArrayList<>();
+        for (final IndexedQuestion question : questions.values()) {
+            if (userId.equals(question.getUserId())) {
+                questionIds.add(question.getId());
+            }
+        }
+        questionIds.forEach(this::remove);
+        return questionIds.size();
+    }
+
+    /**
+     * This method adds the questions of an index built from other questions, such as another id range of the table.
+     */
+    void merge(final InvertedIndex other) {
+        for (final Map.Entry<String, PostingList> entry : other.postings.entrySet()) {
+            final PostingList postingList = postings.get(entry.getKey());
+            if (postingList == null) {
+                postings.put(entry.getKey(), entry.getValue());
+            } else {
+                postingList.merge(entry.getValue());
+            }
+        }
+        questions.putAll(other.questions);
+        checksum += other.checksum;
+    }
+
+    /**
+     * This method returns the questions containing every term of the query which follow the cursor, best ranked first.
+     * The shortest posting list is walked and each of its questions looked up in the other lists by binary search;
+     * only the best maxResults questions are kept while walking.
+     *
+     * @param query      search query
+     * @param after      key of the last result of the previous page, null for the first page
+     * @param maxResults maximum number of questions returned
+     * @return matching questions ordered by rank and id, both descending
+     */
+    List<QuestionSearchHit> search(final String query, final SearchCursor after, final int maxResults) {
+        final Map<String, Integer> terms = termFrequencies(query);
+        if (terms.isEmpty() || maxResults <= 0) {
+            return Collections.emptyList();
+        }
+        final PostingList[] postingLists = new PostingList[terms.size()];
+        int t = 0;
+        for (final String term : terms.keySet()) {
+            postingLists[t] = postings.get(term);
+            if (postingLists[t++] == null) {
+                return Collections.emptyList();
+            }
+        }
+        Arrays.sort(postingLists, Comparator.comparingInt(PostingList::size));
+
+        final PriorityQueue<QuestionSearchHit> best = new PriorityQueue<>(maxResults, RANK_ORDER.reversed());
+        final int[] positions = new int[postingLists.length];
+        final PostingList shortest = postingLists[0];
+        candidates:
+        for (int c = 0; c < shortest.size(); c++) {
+            final int questionId = shortest.questionId(c);
+            float rank = shortest.frequency(c);
+            for (int i = 1; i < postingLists.length; i++) {
+                final int position = postingLists[i].seek(questionId, positions[i]);
+                if (position < 0) {
+                    positions[i] = -position - 1;
+                    continue candidates;
+                }
+                positions[i] = position;
+                rank += postingLists[i].frequency(position);
+            }
+            if (after != null && !(rank < after.getRank() || (rank == after.getRank() && questionId < after.getId()))) {
+                continue;
+            }
+            final QuestionSearchHit worst = best.peek();
+            if (best.size() == maxResults && (rank < worst.getRank() || (rank == worst.getRank() && questionId < worst.getId()))) {
+                continue;
+            }
+            final IndexedQuestion question = questions.get(questionId);
+            best.add(new QuestionSearchHit(questionId, question.getUuid(), question.getContent(), rank));
+            if (best.size() > maxResults) {
+                best.poll();
+            }
+        }
+        final List<QuestionSearchHit> hits = new ArrayList<>(best);
+        hits.sort(RANK_ORDER);
+        return hits;
+    }
+
+    /**
+     * This method writes the questions and the posting lists, so that reading them back does not tokenize the questions again.
+     */
+    void writeTo(final DataOutputStream out) throws IOException {
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(SNAPSHOT_VERSION);
+        out.writeLong(checksum);
+        out.writeInt(questions.size());
+        for (final IndexedQuestion question : questions.values()) {
+            out.writeInt(question.getId());
+            out.writeInt(question.getUserId());
+            writeString(out, question.getUuid());
+            writeString(out, question.getContent());
+        }
+        out.writeInt(postings.size());
+        for (final Map.Entry<String, PostingList> entry : postings.entrySet()) {
+            final PostingList postingList = entry.getValue();
+            writeString(out, entry.getKey());
+            out.writeInt(postingList.size());
+            for (int i = 0; i < postingList.size(); i++) {
+                out.writeInt(postingList.questionId(i));
+            }
+            for (int i = 0; i < postingList.size(); i++) {
+                out.writeInt(postingList.frequency(i));
+            }
+        }
+    }
+
+    /**
+     * @param in stream written by writeTo, typically the snapshot file
+     * @return the index, or null if the stream is not a snapshot of this version
+     */
+    static InvertedIndex readFrom(final DataInputStream in) throws IOException {
+        if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+            return null;
+        }
+        final InvertedIndex index = new InvertedIndex();
+        index.checksum = in.readLong();
+        final int questionCount = in.readInt();
+        for (int i = 0; i < questionCount; i++) {
+            final int questionId = in.readInt();
+            final int userId = in.readInt();
+            final String uuid = readString(in);
+            index.questions.put(questionId, new IndexedQuestion(questionId, uuid, readString(in), userId));
+        }
+        final int termCount = in.readInt();
+        for (int i = 0; i < termCount; i++) {
+            final String term = readString(in);
+            final int size = in.readInt();
+            final int[] questionIds = new int[size];
+            final int[] frequencies = new int[size];
+            for (int j = 0; j < size; j++) {
+                questionIds[j] = in.readInt();
+            }
+            for (int j = 0; j < size; j++) {
+                frequencies[j] = in.readInt();
+            }
+            index.postings.put(term, new PostingList(questionIds, frequencies, size));
+        }
+        return index;
+    }
+
+    /**
+     * @return the terms of the text, with their number of occurrences, in order of first occurrence
+     */
+    static Map<String, Integer> termFrequencies(final String text) {
+        final Map<String, Integer> terms = new LinkedHashMap<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            if (i < text.length() && Character.isLetterOrDigit(text.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                terms.merge(text.substring(start, i).toLowerCase(Locale.ROOT), 1, Integer::sum);
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    private static void writeString(final DataOutputStream out, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,121 @@
+package com.upgrad.quora.service.search;
+
+import java.util.Arrays;
+
+/**
+ * Questions containing a term, as parallel arrays of question ids in ascending order and of the number of
+ * occurrences of the term in each question. Primitive arrays keep a posting list at 8 bytes per question
+ * and let a lookup be a binary search. Not thread safe.
+ */
+final class PostingList {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] questionIds;
+    private int[] frequencies;
+    private int size;
+
+    PostingList() {
+        this(new int[INITIAL_CAPACITY], new int[INITIAL_CAPACITY], 0);
+    }
+
+    PostingList(final int[] questionIds, final int[] frequencies, final int size) {
+        this.questionIds = questionIds;
+        this.frequencies = frequencies;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int questionId(final int index) {
+        return questionIds[index];
+    }
+
+    int frequency(final int index) {
+        return frequencies[index];
+    }
+
+    /**
+     * @param questionId id of the question looked for
+     * @param from       index from which to search, as the posting lists are walked in ascending order
+     * @return index of the question, or (-(insertion point) - 1) as returned by Arrays.binarySearch if it is absent
+     */
+    int seek(final int questionId, final int from) {
+        return Arrays.binarySearch(questionIds, from, size, questionId);
+    }
+
+    /**
+     * This method adds the question, or replaces its frequency if the question is in the list already.
+     * Questions are mostly added in ascending id order, which is an append.
+     */
+    void put(final int questionId, final int frequency) {
+        if (size > 0 && questionIds[size - 1] < questionId) {
+            ensureCapacity(size + 1);
+            questionIds[size] = questionId;
+            frequencies[size++] = frequency;
+            return;
+        }
+        final int index = seek(questionId, 0);
+        if (index >= 0) {
+            frequencies[index] = frequency;
+            return;
+        }
+        final int insertion = -index - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(questionIds, insertion, questionIds, insertion + 1, size - insertion);
+        System.arraycopy(frequencies, insertion, frequencies, insertion + 1, size - insertion);
+        questionIds[insertion] = questionId;
+        frequencies[insertion] = frequency;
+        size++;
+    }
+
+    /**
+     * @return true if the question was in the list
+     */
+    boolean remove(final int questionId) {
+        final int index = seek(questionId, 0);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(questionIds, index + 1, questionIds, index, size - index - 1);
+        System.arraycopy(frequencies, index + 1, frequencies, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * This method merges a posting list built from other questions into this one, in a single pass over both lists.
+     */
+    void merge(final PostingList other) {
+        final int[] mergedIds = new int[size + other.size];
+        final int[] mergedFrequencies = new int[size + other.size];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && questionIds[i] < other.questionIds[j])) {
+                mergedIds[k] = questionIds[i];
+                mergedFrequencies[k++] = frequencies[i++];
+            } else {
+                if (i < size && questionIds[i] == other.questionIds[j]) {
+                    i++;
+                }
+                mergedIds[k] = other.questionIds[j];
+                mergedFrequencies[k++] = other.frequencies[j++];
+            }
+        }
+        questionIds = mergedIds;
+        frequencies = mergedFrequencies;
+        size = k;
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > questionIds.length) {
+            final int newCapacity = Math.max(capacity, questionIds.length + (questionIds.length >> 1));
+            questionIds = Arrays.copyOf(questionIds, newCapacity);
+            frequencies = Arrays.copyOf(frequencies, newCapacity);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.upgrad.quora.service.search;
+
+import com.upgrad.quora.service.common.NotificationChannel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+
+/**
+ * Broadcasts the changes of the questions to the in-memory search index of every node over Postgres LISTEN/NOTIFY,
+ * when quora.search.engine is "memory".
+ * <p>
+ * Events only carry ids: a node which receives a saved question reads it again from the database. While the listener is
+ * disconnected the index of the node misses changes, so it stops answering the searches until the listener has reconnected
+ * and the index has been reloaded.
+ */
+@Component
+@ManagedResource(objectName = "com.upgrad.quora:type=QuestionSearchChannel")
+public class QuestionSearchChannel extends NotificationChannel {
+
+    static final String CHANNEL = "quora_question_search";
+
+    private static final String SAVED_PREFIX = "q:";
+    private static final String DELETED_PREFIX = "d:";
+    private static final String USER_DELETED_PREFIX = "u:";
+
+    // the index publishes through the channel, so it is only looked up once events arrive
+    @Lazy
+    @Autowired
+    private QuestionSearchIndex questionSearchIndex;
+
+    public QuestionSearchChannel(@Value("${quora.search.engine:database}") final String engine) {
+        super(CHANNEL, "question-search", "memory".equalsIgnoreCase(engine));
+    }
+
+    void publishSaved(final Integer questionId) {
+        enqueue(SAVED_PREFIX + questionId);
+    }
+
+    void publishDeleted(final Integer questionId) {
+        enqueue(DELETED_PREFIX + questionId);
+    }
+
+    void publishUserDeleted(final Integer userId) {
+        enqueue(USER_DELETED_PREFIX + userId);
+    }
+
+    @Override
+    protected void applyEvent(final String event) {
+        if (event.startsWith(SAVED_PREFIX)) {
+            questionSearchIndex.refresh(Integer.valueOf(event.substring(SAVED_PREFIX.length())));
+        } else if (event.startsWith(DELETED_PREFIX)) {
+            questionSearchIndex.remove(Integer.valueOf(event.substring(DELETED_PREFIX.length())));
+        } else if (event.startsWith(USER_DELETED_PREFIX)) {
+            questionSearchIndex.removeUser(Integer.valueOf(event.substring(USER_DELETED_PREFIX.length())));
+        } else {
+            throw new IllegalArgumentException("Unknown question search event");
+        }
+    }
+
+    /**
+     * The index is reloaded on the listener thread, so the events received meanwhile are applied to the reloaded index.
+     * A failed load makes the listener reconnect, and so load again, after a delay.
+     */
+    @Override
+    protected void resync(final Connection connection) {
+        if (!questionSearchIndex.reload()) {
+            throw new IllegalStateException("Could not load the question search index");
+        }
+    }
+
+    @Override
+    protected void disconnected() {
+        questionSearchIndex.markStale();
+    }
+}
@@ -0,0 +1,465 @@
+package com.upgrad.quora.service.search;
+
+import com.upgrad.quora.service.common.SearchCursor;
+import com.upgrad.quora.service.dao.QuestionDao;
+import com.upgrad.quora.service.dto.IndexedQuestion;
+import com.upgrad.quora.service.dto.QuestionSearchHit;
+import com.upgrad.quora.service.entity.QuestionEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * In-memory full-text index of the questions, which serves the question search without going to the database
+ * when quora.search.engine is "memory". Every node holds the whole index.
+ * <p>
+ * Once the application is ready, the index is read from the snapshot file if the snapshot matches the fingerprint
+ * of the question table, and rebuilt from the database otherwise, id range by id range on load-threads threads.
+ * Until then the searches go to the database. The QuestionDao then keeps the index current with the questions created,
+ * edited and deleted by this node, once their transaction has committed, and the QuestionSearchChannel with the changes
+ * committed by every node; changes committed while the index is loading are replayed on the loaded index.
+ * The index is loaded whenever the channel (re)connects, and searches go to the database again while it is disconnected,
+ * as the index then misses the changes of the other nodes. The snapshot is written when the application shuts down.
+ */
+@Component
+@ManagedResource(objectName = "com.upgrad.quora:type=QuestionSearchIndex")
+public class QuestionSearchIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QuestionSearchIndex.class);
+
+    // the DAO feeds the index, so it is only looked up once the index loads
+    @Lazy
+    @Autowired
+    private QuestionDao questionDao;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private QuestionSearchChannel questionSearchChannel;
+
+    private final boolean enabled;
+
+    private final int loadThreads;
+
+    private final int loadBatchSize;
+
+    private final Path snapshotPath;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by the lock, null until the index is loaded
+    private InvertedIndex index;
+
+    // changes committed while the index loads, replayed on the loaded index; guarded by the lock
+    private final List<Consumer<InvertedIndex>> pendingChanges = new ArrayList<>();
+
+    // guarded by the lock
+    private boolean loading;
+
+    private volatile boolean ready;
+
+    private volatile boolean loadedFromSnapshot;
+
+    private volatile long lastLoadMillis;
+
+    private final LongAdder searches = new LongAdder();
+
+    public QuestionSearchIndex(@Value("${quora.search.engine:database}") final String engine,
+                               @Value("${quora.search.load-threads:4}") final int loadThreads,
+                               @Value("${quora.search.load-batch-size:10000}") final int loadBatchSize,
+                               @Value("${quora.search.snapshot-path:}") final String snapshotPath) {
+        this.enabled = "memory".equalsIgnoreCase(engine);
+        this.loadThreads = loadThreads;
+        this.loadBatchSize = loadBatchSize;
+        this.snapshotPath = snapshotPath.isEmpty() ? null : Paths.get(snapshotPath);
+        // changes committed before the application is ready are kept for the first load
+        this.loading = enabled;
+    }
+
+    /**
+     * The channel loads the index once its listener has connected, so that no change committed meanwhile is missed.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            questionSearchChannel.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ready && snapshotPath != null) {
+            writeSnapshot();
+        }
+    }
+
+    @ManagedAttribute(description = "True once the index is loaded and answers the searches")
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * This method returns the questions matching the search query which follow the cursor, best ranked first.
+     *
+     * @param query      search query, whose words must all be in the content of the question
+     * @param after      key of the last result of the previous page, null for the first page
+     * @param maxResults maximum number of questions returned
+     * @return matching questions ordered by rank and id, both descending
+     */
+    public List<QuestionSearchHit> search(final String query, final SearchCursor after, final int maxResults) {
+        searches.increment();
+        lock.readLock().lock();
+        try {
+            return index == null ? Collections.emptyList() : index.search(query, after, maxResults);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * This method indexes the created or edited question once the current transaction has committed.
+     * The question is read now, so later changes of the entity are not indexed.
+     */
+    public void questionSaved(final QuestionEntity questionEntity) {
+        if (enabled) {
+            final IndexedQuestion question = new IndexedQuestion(questionEntity.getId(), questionEntity.getUuid(),
+                    questionEntity.getContent(), questionEntity.getUser().getId());
+            afterCommit(index -> index.put(question));
+            questionSearchChannel.publishSaved(question.getId());
+        }
+    }
+
+    /**
+     * This method removes the question from the index once the current transaction has committed.
+     */
+    public void questionDeleted(final Integer questionId) {
+        if (enabled) {
+            afterCommit(index -> index.remove(questionId));
+            questionSearchChannel.publishDeleted(questionId);
+        }
+    }
+
+    /**
+     * This method removes the questions of the user from the index once the current transaction has committed,
+     * as the database deletes them along with the user.
+     */
+    public void userDeleted(final Integer userId) {
+        if (enabled) {
+            afterCommit(index -> index.removeUser(userId));
+            questionSearchChannel.publishUserDeleted(userId);
+        }
+    }
+
+    /**
+     * This method indexes the question as it is in the database, or removes it if it does not exist any more,
+     * after another node saved it. The question is read from the primary, where the change is visible already.
+     */
+    void refresh(final Integer questionId) {
+        final List<IndexedQuestion> questions = primaryTransaction().execute(status -> questionDao.getQuestionsForIndex(questionId, questionId + 1));
+        if (questions.isEmpty()) {
+            apply(index -> index.remove(questionId));
+        } else {
+            apply(index -> index.put(questions.get(0)));
+        }
+    }
+
+    void remove(final Integer questionId) {
+        apply(index -> index.remove(questionId));
+    }
+
+    void removeUser(final Integer userId) {
+        apply(index -> index.removeUser(userId));
+    }
+
+    /**
+     * This method sends the searches to the database until the index is loaded again, as it may miss changes.
+     */
+    void markStale() {
+        if (ready) {
+            ready = false;
+            LOGGER.warn("Question search index is out of date, searching the database until it is reloaded");
+        }
+    }
+
+    @ManagedAttribute(description = "True if the index was loaded from the snapshot rather than rebuilt from the database")
+    public boolean getLoadedFromSnapshot() {
+        return loadedFromSnapshot;
+    }
+
+    @ManagedAttribute(description = "Duration of the last load of the index in milliseconds")
+    public long getLastLoadMillis() {
+        return lastLoadMillis;
+    }
+
+    @ManagedAttribute(description = "Number of indexed questions")
+    public int getQuestionCount() {
+        lock.readLock().lock();
+        try {
+            return index == null ? 0 : index.getQuestionCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @ManagedAttribute(description = "Number of distinct terms of the indexed questions")
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return index == null ? 0 : index.getTermCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @ManagedAttribute(description = "Number of searches answered by the index")
+    public long getSearches() {
+        return searches.sum();
+    }
+
+    /**
+     * This method writes the index to the snapshot file, through a temporary file which then replaces the snapshot,
+     * so that a crash while writing leaves the previous snapshot in place.
+     *
+     * @return true if the snapshot was written
+     */
+    @ManagedOperation(description = "Writes the index to the snapshot file")
+    public boolean writeSnapshot() {
+        if (snapshotPath == null) {
+            return false;
+        }
+        // the index is copied in memory under the lock, so that writers are not blocked while the file is written
+        final ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        final IndexFingerprint fingerprint;
+        lock.readLock().lock();
+        try {
+            if (index == null) {
+                return false;
+            }
+            try (DataOutputStream out = new DataOutputStream(snapshot)) {
+                index.writeTo(out);
+            }
+            fingerprint = index.getFingerprint();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            final Path temporary = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                snapshot.writeTo(out);
+            }
+            Files.move(temporary, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.info("Question search index snapshot written to {}, {}", snapshotPath, fingerprint);
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn("Could not write the question search index snapshot to {}", snapshotPath, e);
+            return false;
+        }
+    }
+
+    /**
+     * This method rebuilds the index from the database, ignoring the snapshot. Searches keep using the current index meanwhile.
+     */
+    @ManagedOperation(description = "Rebuilds the index from the database")
+    public void rebuild() {
+        if (enabled) {
+            final long start = System.currentTimeMillis();
+            beginLoad();
+            try {
+                install(loadFromDatabase(), false, start);
+            } catch (RuntimeException e) {
+                abortLoad();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * This method loads the index again, from the snapshot if it matches the question table and from the database otherwise.
+     * Searches keep using the current index meanwhile.
+     *
+     * @return true if the index was loaded
+     */
+    @ManagedOperation(description = "Loads the index from the snapshot if it is up to date, from the database otherwise")
+    public boolean reload() {
+        if (!enabled) {
+            return false;
+        }
+        final long start = System.currentTimeMillis();
+        beginLoad();
+        try {
+            final IndexFingerprint fingerprint = primaryTransaction().execute(status -> questionDao.getIndexFingerprint());
+            final InvertedIndex snapshot = readSnapshot();
+            if (snapshot != null && snapshot.getFingerprint().equals(fingerprint)) {
+                install(snapshot, true, start);
+            } else {
+                if (snapshot != null) {
+                    LOGGER.info("Question search index snapshot is out of date: {} instead of {}", snapshot.getFingerprint(), fingerprint);
+                }
+                install(loadFromDatabase(), false, start);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            abortLoad();
+            LOGGER.error("Could not load the question search index", e);
+            return false;
+        }
+    }
+
+    private InvertedIndex readSnapshot() {
+        if (snapshotPath == null || !Files.isRegularFile(snapshotPath)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)))) {
+            return InvertedIndex.readFrom(in);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Could not read the question search index snapshot {}", snapshotPath, e);
+            return null;
+        }
+    }
+
+    /**
+     * The id ranges of loadBatchSize ids are read and indexed in parallel, each in a transaction of its own,
+     * and the partial indexes are then merged.
+     */
+    private InvertedIndex loadFromDatabase() {
+        final TransactionTemplate transactionTemplate = primaryTransaction();
+        final Integer maxId = transactionTemplate.execute(status -> questionDao.getMaxQuestionId());
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, loadThreads), new CustomizableThreadFactory("question-search-loader-"));
+        try {
+            final List<Future<InvertedIndex>> partitions = new ArrayList<>();
+            for (long fromId = 0; maxId != null && fromId <= maxId; fromId += loadBatchSize) {
+                final int from = (int) fromId;
+                final int to = (int) Math.min(fromId + loadBatchSize, (long) maxId + 1);
+                partitions.add(executor.submit(() -> {
+                    final InvertedIndex partition = new InvertedIndex();
+                    transactionTemplate.execute(status -> questionDao.getQuestionsForIndex(from, to)).forEach(partition::put);
+                    return partition;
+                }));
+            }
+            final InvertedIndex loaded = new InvertedIndex();
+            for (final Future<InvertedIndex> partition : partitions) {
+                loaded.merge(partition.get());
+            }
+            return loaded;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading the question search index", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Could not load the question search index", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void install(final InvertedIndex loaded, final boolean fromSnapshot, final long start) {
+        lock.writeLock().lock();
+        try {
+            pendingChanges.forEach(change -> change.accept(loaded));
+            pendingChanges.clear();
+            loading = false;
+            index = loaded;
+            ready = true;
+            loadedFromSnapshot = fromSnapshot;
+            lastLoadMillis = System.currentTimeMillis() - start;
+            LOGGER.info("Question search index loaded from the {} in {} ms, {}", fromSnapshot ? "snapshot" : "database",
+                    lastLoadMillis, loaded.getFingerprint());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void beginLoad() {
+        lock.writeLock().lock();
+        try {
+            loading = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void abortLoad() {
+        lock.writeLock().lock();
+        try {
+            loading = false;
+            pendingChanges.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void afterCommit(final Consumer<InvertedIndex> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(change);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                apply(change);
+            }
+        });
+    }
+
+    private void apply(final Consumer<InvertedIndex> change) {
+        lock.writeLock().lock();
+        try {
+            if (index != null) {
+                change.accept(index);
+            }
+            if (loading) {
+                pendingChanges.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The index is read from the primary, as read-only transactions go to a replica which may lag behind:
+     * the index would miss the changes which the channel announces once they are committed on the primary,
+     * and a snapshot could be matched against the fingerprint of an older table.
+     */
+    private TransactionTemplate primaryTransaction() {
+        return new TransactionTemplate(transactionManager);
+    }
+}
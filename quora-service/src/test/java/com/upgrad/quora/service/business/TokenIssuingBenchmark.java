@@ -0,0 +1,76 @@
+package com.upgrad.quora.service.business;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares issuing an access token through the key ring with the former sign in path,
+ * which built a new HMAC512 algorithm from the password hash of the user and a random UUID key id for every token.
+ * <p>
+ * Run the main method from the test classpath, e.g. from the IDE after <code>mvn -pl quora-service test-compile</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class TokenIssuingBenchmark {
+
+    private static final String PASSWORD_HASH = "$pbkdf2-sha512$120000$8C8B2E0B09A1CE1F6F5A53E1E0C1A4A14C6B7D8E9F00112233445566778899AABBCCDDEEFF";
+    private static final String USER_UUID = "0d3b6b35-bf3e-4b8b-9d8e-2a4c4b0b4b5e";
+
+    private JwtKeyRing keyRing;
+
+    private ZonedDateTime issuedAt;
+
+    private ZonedDateTime expiresAt;
+
+    @Setup
+    public void setup() {
+        keyRing = new JwtKeyRing();
+        keyRing.setKeys(Collections.singletonMap("benchmark", "f5d8a4e1c9b24c0c8f7e6d5c4b3a29180716253443526170"));
+        keyRing.init();
+        issuedAt = ZonedDateTime.now();
+        expiresAt = issuedAt.plusHours(8);
+    }
+
+    @Benchmark
+    public String perLoginAlgorithm() {
+        return JWT.create().withIssuer("https://quora.io")
+                .withKeyId(UUID.randomUUID().toString())
+                .withAudience(USER_UUID)
+                .withIssuedAt(Date.from(issuedAt.toInstant())).withExpiresAt(Date.from(expiresAt.toInstant()))
+                .sign(Algorithm.HMAC512(PASSWORD_HASH));
+    }
+
+    @Benchmark
+    public String keyRing() {
+        return keyRing.getActiveProvider().generateToken(USER_UUID, issuedAt, expiresAt);
+    }
+
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TokenIssuingBenchmark.class.getSimpleName()).build()).run();
+    }
+}